@@ -0,0 +1,108 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.util.Arrays;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * {@link FormatInferrer} for a single path that adapts to the samples seen at that path. During the
+ * warm-up, it behaves exactly like {@link FormatInferrers#chained(FormatInferrer...)}. After the
+ * warm-up:
+ * <ul>
+ * <li>If none of the {@link FormatInferrer}s produced a format, no {@link FormatInferrer} is called
+ * anymore and no format is inferred for the rest of the samples.</li>
+ * <li>If a single {@link FormatInferrer} produced the format for all the samples, only that
+ * {@link FormatInferrer} is called, falling back to all the {@link FormatInferrer}s if it does not
+ * produce a format.</li>
+ * <li>Otherwise the {@link FormatInferrer}s that did not produce any format are skipped.</li>
+ * </ul>
+ * This trades accuracy for speed, since formats that did not show up during the warm-up can be
+ * missed later. A new instance is used for every path. NOT PUBLIC.
+ *
+ * @author sli
+ * @see JsonSchemaInferrerBuilder#setAdaptiveFormatInference(int)
+ */
+@NotThreadSafe
+final class AdaptiveFormatInferrer implements FormatInferrer {
+
+  private final FormatInferrer[] formatInferrers;
+  private final int warmUpSamples;
+  // The number of formats produced by every FormatInferrer during the warm-up
+  private final int[] hitCounts;
+  private int sampleCount;
+  // The indexes of the FormatInferrers to call after the warm-up. Null during the warm-up.
+  private int[] activeIndexes;
+  // The index of the FormatInferrer that produced the formats for all the warm-up samples, or -1
+  private int lockedIndex = -1;
+
+  AdaptiveFormatInferrer(@Nonnull FormatInferrer[] formatInferrers,
+      @Nonnegative int warmUpSamples) {
+    this.formatInferrers = formatInferrers;
+    this.warmUpSamples = warmUpSamples;
+    this.hitCounts = new int[formatInferrers.length];
+  }
+
+  @Override
+  public String inferFormat(@Nonnull FormatInferrerInput input) {
+    if (activeIndexes == null) {
+      final String format = inferFormatWarmUp(input);
+      if (++sampleCount >= warmUpSamples) {
+        finishWarmUp();
+      }
+      return format;
+    }
+    if (lockedIndex >= 0) {
+      final String format = formatInferrers[lockedIndex].inferFormat(input);
+      if (format != null) {
+        return format;
+      }
+      // Fall back to full inference
+      for (int i = 0; i < formatInferrers.length; i++) {
+        if (i == lockedIndex) {
+          continue;
+        }
+        final String fallbackFormat = formatInferrers[i].inferFormat(input);
+        if (fallbackFormat != null) {
+          return fallbackFormat;
+        }
+      }
+      return null;
+    }
+    for (int index : activeIndexes) {
+      final String format = formatInferrers[index].inferFormat(input);
+      if (format != null) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private String inferFormatWarmUp(@Nonnull FormatInferrerInput input) {
+    for (int i = 0; i < formatInferrers.length; i++) {
+      final String format = formatInferrers[i].inferFormat(input);
+      if (format != null) {
+        hitCounts[i]++;
+        return format;
+      }
+    }
+    return null;
+  }
+
+  private void finishWarmUp() {
+    int activeCount = 0;
+    final int[] indexes = new int[formatInferrers.length];
+    for (int i = 0; i < formatInferrers.length; i++) {
+      if (hitCounts[i] > 0) {
+        indexes[activeCount++] = i;
+      }
+    }
+    if (activeCount == 1 && hitCounts[indexes[0]] == sampleCount) {
+      lockedIndex = indexes[0];
+    }
+    activeIndexes = Arrays.copyOf(indexes, activeCount);
+  }
+
+}
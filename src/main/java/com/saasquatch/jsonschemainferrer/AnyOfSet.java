@@ -0,0 +1,216 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Mutable {@link Set} of {@code anyOf} schemas with exactly the same iteration order as a
+ * {@link HashSet} of the schemas, where the hash codes are computed without recursion. This is
+ * needed because {@link ObjectNode#hashCode()} recurses into the whole schema, which overflows the
+ * stack for schemas of deep samples. The hash codes of the {@link ObjectNode}s and
+ * {@link ArrayNode}s are cached by identity in a map shared by all the sets of a single inference,
+ * so the schemas built for the deeper paths are only hashed once, and the schemas should not be
+ * modified after they are added. NOT PUBLIC.
+ *
+ * @author sli
+ */
+@NotThreadSafe
+final class AnyOfSet extends AbstractSet<ObjectNode> {
+
+  private final Set<Key> keys = new HashSet<>();
+  private final Map<JsonNode, Integer> hashCodeCache;
+
+  /**
+   * @param hashCodeCache The cache of the hash codes of the containers, which should be an
+   *        {@link java.util.IdentityHashMap}
+   */
+  AnyOfSet(@Nonnull Map<JsonNode, Integer> hashCodeCache) {
+    this.hashCodeCache = hashCodeCache;
+  }
+
+  @Override
+  public int size() {
+    return keys.size();
+  }
+
+  @Override
+  public boolean add(ObjectNode anyOf) {
+    return keys.add(new Key(anyOf, hashCode(anyOf, hashCodeCache)));
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof ObjectNode
+        && keys.contains(new Key((ObjectNode) o, hashCode((ObjectNode) o, hashCodeCache)));
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return o instanceof ObjectNode
+        && keys.remove(new Key((ObjectNode) o, hashCode((ObjectNode) o, hashCodeCache)));
+  }
+
+  @Override
+  public Iterator<ObjectNode> iterator() {
+    final Iterator<Key> keyIterator = keys.iterator();
+    return new Iterator<ObjectNode>() {
+
+      @Override
+      public boolean hasNext() {
+        return keyIterator.hasNext();
+      }
+
+      @Override
+      public ObjectNode next() {
+        return keyIterator.next().anyOf;
+      }
+
+      @Override
+      public void remove() {
+        keyIterator.remove();
+      }
+
+    };
+  }
+
+  /**
+   * @return The same value as {@link JsonNode#hashCode()}, computed with an explicit stack for
+   *         {@link ObjectNode}s and {@link ArrayNode}s, whose hash codes are defined by the
+   *         {@link Map} and {@link java.util.List} of their children
+   */
+  static int hashCode(@Nonnull JsonNode node, @Nonnull Map<JsonNode, Integer> hashCodeCache) {
+    if (!isPlainContainer(node)) {
+      return node.hashCode();
+    }
+    final Integer cachedHashCode = hashCodeCache.get(node);
+    if (cachedHashCode != null) {
+      return cachedHashCode;
+    }
+    final Deque<HashFrame> stack = new ArrayDeque<>();
+    stack.push(new HashFrame(node));
+    while (true) {
+      final HashFrame frame = stack.peek();
+      if (frame.children.hasNext()) {
+        final Map.Entry<String, JsonNode> child = frame.children.next();
+        final JsonNode childNode = child.getValue();
+        final boolean isContainer = isPlainContainer(childNode);
+        final Integer childHashCode = isContainer ? hashCodeCache.get(childNode) : null;
+        if (isContainer && childHashCode == null) {
+          frame.pendingFieldName = child.getKey();
+          stack.push(new HashFrame(childNode));
+        } else {
+          frame.addChild(child.getKey(),
+              childHashCode == null ? childNode.hashCode() : childHashCode);
+        }
+        continue;
+      }
+      stack.pop();
+      hashCodeCache.put(frame.node, frame.hashCode);
+      final HashFrame parentFrame = stack.peek();
+      if (parentFrame == null) {
+        return frame.hashCode;
+      }
+      parentFrame.addChild(parentFrame.pendingFieldName, frame.hashCode);
+    }
+  }
+
+  /**
+   * @return Whether the given node uses the hash code of its children as is, as opposed to a
+   *         subclass that may have its own hash code
+   */
+  private static boolean isPlainContainer(@Nonnull JsonNode node) {
+    final Class<?> nodeClass = node.getClass();
+    return nodeClass == ObjectNode.class || nodeClass == ArrayNode.class;
+  }
+
+  /**
+   * The hash code of a container so far. The children of {@link ArrayNode}s are iterated with a
+   * null field name.
+   */
+  private static final class HashFrame {
+
+    final JsonNode node;
+    final Iterator<Map.Entry<String, JsonNode>> children;
+    int hashCode;
+    String pendingFieldName;
+
+    HashFrame(@Nonnull JsonNode node) {
+      this.node = node;
+      if (node.isObject()) {
+        this.children = node.fields();
+        // Map#hashCode
+        this.hashCode = 0;
+      } else {
+        final Iterator<JsonNode> elements = node.elements();
+        this.children = new Iterator<Map.Entry<String, JsonNode>>() {
+
+          @Override
+          public boolean hasNext() {
+            return elements.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, JsonNode> next() {
+            return JunkDrawer.entryOf(null, elements.next());
+          }
+
+        };
+        // List#hashCode
+        this.hashCode = 1;
+      }
+    }
+
+    void addChild(String fieldName, int childHashCode) {
+      if (node.isObject()) {
+        hashCode += fieldName.hashCode() ^ childHashCode;
+      } else {
+        hashCode = 31 * hashCode + childHashCode;
+      }
+    }
+
+  }
+
+  /**
+   * An {@code anyOf} with its hash code. Equality falls back to {@link ObjectNode#equals(Object)},
+   * which only recurses when two {@code anyOf}s have the same hash code.
+   */
+  private static final class Key {
+
+    final ObjectNode anyOf;
+    final int hashCode;
+
+    Key(@Nonnull ObjectNode anyOf, int hashCode) {
+      this.anyOf = anyOf;
+      this.hashCode = hashCode;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return hashCode == other.hashCode && anyOf.equals(other.anyOf);
+    }
+
+  }
+
+}
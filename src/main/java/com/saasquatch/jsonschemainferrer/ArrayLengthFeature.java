@@ -1,7 +1,7 @@
 package com.saasquatch.jsonschemainferrer;
 
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
-import com.fasterxml.jackson.databind.JsonNode;
+import javax.annotation.Nonnull;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -16,17 +16,9 @@ public enum ArrayLengthFeature implements GenericSchemaFeature {
    */
   MIN_ITEMS {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.ARRAY.equals(input.getType())) {
-        return null;
-      }
-      final ObjectNode result = newObject();
-      input.getSamples().stream()
-          .filter(JsonNode::isArray)
-          .mapToInt(JsonNode::size)
-          .min()
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      input.getStats().getMinSize()
           .ifPresent(minItems -> result.put(Consts.Fields.MIN_ITEMS, minItems));
-      return result;
     }
   },
 
@@ -35,18 +27,26 @@ public enum ArrayLengthFeature implements GenericSchemaFeature {
    */
   MAX_ITEMS {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.ARRAY.equals(input.getType())) {
-        return null;
-      }
-      final ObjectNode result = newObject();
-      input.getSamples().stream()
-          .filter(JsonNode::isArray)
-          .mapToInt(JsonNode::size)
-          .max()
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      input.getStats().getMaxSize()
           .ifPresent(maxItems -> result.put(Consts.Fields.MAX_ITEMS, maxItems));
-      return result;
     }
   },;
 
+  @Override
+  public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
+    if (!Consts.Types.ARRAY.equals(input.getType())) {
+      return null;
+    }
+    final ObjectNode result = newObject();
+    addFeatureResult(input, result);
+    return result;
+  }
+
+  /**
+   * Add the result of this feature to the given result without checking the type. NOT PUBLIC.
+   */
+  abstract void addFeatureResult(@Nonnull GenericSchemaFeatureInput input,
+      @Nonnull ObjectNode result);
+
 }
@@ -0,0 +1,172 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
+
+/**
+ * A {@link FormatInferrer} that memoizes the results of another {@link FormatInferrer} for textual
+ * samples, keyed by the text and the {@link SpecVersion}. The cache is bounded by the number of
+ * entries and evicts the least recently used entries first. The entries are spread across a number
+ * of independently locked segments, so an instance can be shared by threads using the same
+ * {@link JsonSchemaInferrer}. Non-textual samples are passed to the delegate as they are.<br>
+ * Note that this is only meaningful if the delegate {@link FormatInferrer} only looks at the text
+ * and the {@link SpecVersion} of the input.
+ *
+ * @author sli
+ * @see FormatInferrers#cached(FormatInferrer, int)
+ */
+@Beta
+@ThreadSafe
+public final class CachingFormatInferrer implements FormatInferrer {
+
+  private static final int MAX_SEGMENTS = 16;
+  // Marker for cached null results
+  private static final String NO_FORMAT = new String();
+
+  private final FormatInferrer delegate;
+  private final Segment[] segments;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  CachingFormatInferrer(@Nonnull FormatInferrer delegate, @Nonnegative int maxEntries) {
+    this.delegate = Objects.requireNonNull(delegate);
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Invalid maxEntries");
+    }
+    // Every segment should be able to hold at least a few entries
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENTS && segmentCount * 8 <= maxEntries) {
+      segmentCount <<= 1;
+    }
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      // Distribute the remainder so the capacities add up to maxEntries
+      final int remainder = i < maxEntries % segmentCount ? 1 : 0;
+      segments[i] = new Segment(maxEntries / segmentCount + remainder);
+    }
+  }
+
+  @Override
+  public String inferFormat(@Nonnull FormatInferrerInput input) {
+    final String textValue = input.getSample().textValue();
+    if (textValue == null) {
+      return delegate.inferFormat(input);
+    }
+    final Key key = new Key(textValue, input.getSpecVersion());
+    final Segment segment = segments[spread(key.hashCode()) & (segments.length - 1)];
+    final String cached = segment.get(key);
+    if (cached != null) {
+      hitCount.increment();
+      return unmask(cached);
+    }
+    missCount.increment();
+    // Run the delegate outside of the lock. Concurrent misses for the same key are fine.
+    final String format = delegate.inferFormat(input);
+    segment.put(key, format == null ? NO_FORMAT : format);
+    return format;
+  }
+
+  /**
+   * @return The number of lookups that were served from the cache
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return The number of lookups that had to call the underlying {@link FormatInferrer}
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return The number of entries currently in the cache
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  @Nullable
+  private static String unmask(@Nonnull String cached) {
+    return cached == NO_FORMAT ? null : cached;
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Key {
+
+    private final String text;
+    private final SpecVersion specVersion;
+    private final int hash;
+
+    Key(@Nonnull String text, @Nonnull SpecVersion specVersion) {
+      this.text = text;
+      this.specVersion = specVersion;
+      this.hash = 31 * text.hashCode() + specVersion.ordinal();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return hash == other.hash && specVersion == other.specVersion && text.equals(other.text);
+    }
+
+  }
+
+  private static final class Segment {
+
+    private final Map<Key, String> map;
+
+    Segment(int capacity) {
+      this.map = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+          return size() > capacity;
+        }
+
+      };
+    }
+
+    synchronized String get(@Nonnull Key key) {
+      return map.get(key);
+    }
+
+    synchronized void put(@Nonnull Key key, @Nonnull String value) {
+      map.put(key, value);
+    }
+
+    synchronized int size() {
+      return map.size();
+    }
+
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.util.Arrays;
+import java.util.Objects;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+
+/**
+ * {@link FormatInferrer} for a single path that only runs the actual {@link FormatInferrer} on the
+ * first samples of every {@link JsonNodeType} at that path, so those samples get exactly the same
+ * formats as without a limit. After that, for every {@link JsonNodeType}:
+ * <ul>
+ * <li>If the inspected samples all agreed on a format, every sample is checked against that format
+ * with only the {@link FormatInferrer} that produced it, falling back to the actual
+ * {@link FormatInferrer} if the check fails.</li>
+ * <li>Otherwise no {@link FormatInferrer} is called anymore and no format is inferred for the rest
+ * of the samples.</li>
+ * </ul>
+ * A sample therefore never gets a format it was not checked against. Since the samples are seen in
+ * the same order with and without a {@link SchemaAccumulator}, the formats are the same either way.
+ * A new instance is used for every path. NOT PUBLIC.
+ *
+ * @author sli
+ * @see JsonSchemaInferrerBuilder#setValueInspectionLimit(int, long)
+ */
+@NotThreadSafe
+final class CappedFormatInferrer implements FormatInferrer {
+
+  private static final JsonNodeType[] NODE_TYPES = JsonNodeType.values();
+  // Placeholder for inspected samples of the same JsonNodeType not agreeing on the format
+  private static final String MIXED = new String();
+  // The locked index before it is known which FormatInferrer produced the agreed format
+  private static final int UNKNOWN_INDEX = -1;
+
+  private final FormatInferrer formatInferrer;
+  private final FormatInferrer[] formatInferrers;
+  private final int maxInspectedSamples;
+  // All the arrays below are indexed by the JsonNodeType ordinals
+  private final int[] inspectedCounts = new int[NODE_TYPES.length];
+  // The format all the inspected samples agreed on, null for no format, or MIXED
+  private final String[] agreedFormats = new String[NODE_TYPES.length];
+  // The index of the FormatInferrer that produced the agreed format
+  private final int[] lockedIndexes = new int[NODE_TYPES.length];
+
+  /**
+   * @param formatInferrer the actual {@link FormatInferrer} for the path
+   * @param formatInferrers the {@link FormatInferrer}s the actual one is made of, in order
+   */
+  CappedFormatInferrer(@Nonnull FormatInferrer formatInferrer,
+      @Nonnull FormatInferrer[] formatInferrers, @Nonnegative int maxInspectedSamples) {
+    this.formatInferrer = formatInferrer;
+    this.formatInferrers = formatInferrers;
+    this.maxInspectedSamples = maxInspectedSamples;
+    Arrays.fill(lockedIndexes, UNKNOWN_INDEX);
+  }
+
+  @Override
+  public String inferFormat(@Nonnull FormatInferrerInput input) {
+    final int typeIndex = input.getSample().getNodeType().ordinal();
+    if (inspectedCounts[typeIndex] < maxInspectedSamples) {
+      final String format = formatInferrer.inferFormat(input);
+      if (inspectedCounts[typeIndex]++ == 0) {
+        agreedFormats[typeIndex] = format;
+      } else if (!Objects.equals(agreedFormats[typeIndex], format)) {
+        agreedFormats[typeIndex] = MIXED;
+      }
+      return format;
+    }
+    final String agreedFormat = agreedFormats[typeIndex];
+    if (agreedFormat == null || agreedFormat == MIXED) {
+      return null;
+    }
+    final int lockedIndex = lockedIndexes[typeIndex];
+    if (lockedIndex == UNKNOWN_INDEX) {
+      return inferFormatAndLock(input, typeIndex, agreedFormat);
+    }
+    if (agreedFormat.equals(formatInferrers[lockedIndex].inferFormat(input))) {
+      return agreedFormat;
+    }
+    // Fall back to full inference
+    return formatInferrer.inferFormat(input);
+  }
+
+  /**
+   * Infer the format like {@link FormatInferrers#chained(FormatInferrer...)}, and remember which
+   * {@link FormatInferrer} produced the agreed format if it did
+   */
+  private String inferFormatAndLock(@Nonnull FormatInferrerInput input, int typeIndex,
+      @Nonnull String agreedFormat) {
+    for (int i = 0; i < formatInferrers.length; i++) {
+      final String format = formatInferrers[i].inferFormat(input);
+      if (format == null) {
+        continue;
+      }
+      if (format.equals(agreedFormat)) {
+        lockedIndexes[typeIndex] = i;
+      }
+      return format;
+    }
+    return null;
+  }
+
+}
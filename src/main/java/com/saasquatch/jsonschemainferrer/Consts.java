@@ -38,6 +38,8 @@ interface Consts {
     String MULTIPLE_OF = "multipleOf";
     String DOLLAR_COMMENT = "$comment";
     String ENUM = "enum";
+    String DEFINITIONS = "definitions";
+    String DOLLAR_REF = "$ref";
     Set<String> SINGLETON_TYPE = Collections.singleton(TYPE);
   }
 
@@ -0,0 +1,183 @@
+package com.saasquatch.jsonschemainferrer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Hand written scanner for the shapes of the ISO-8601 strings accepted by
+ * {@link java.time.ZonedDateTime#parse(CharSequence)}, {@link java.time.LocalDate#parse},
+ * {@link java.time.LocalTime#parse} and {@link java.time.OffsetTime#parse}. It only looks at the
+ * shape of the string and does not validate the values of the fields, so every string accepted by
+ * one of the parsers above gets the corresponding {@link Shape}, but not the other way around.
+ * This allows rejecting the vast majority of non date time strings with a few character
+ * comparisons, without the cost of a {@link java.time.format.DateTimeParseException}. NOT PUBLIC.
+ *
+ * @author sli
+ */
+final class DateTimeScanner {
+
+  private DateTimeScanner() {}
+
+  enum Shape {
+    /**
+     * Cannot be parsed by any of the parsers
+     */
+    NONE,
+    /**
+     * May be parsed by {@link java.time.ZonedDateTime#parse(CharSequence)}
+     */
+    DATE_TIME,
+    /**
+     * May be parsed by {@link java.time.LocalDate#parse(CharSequence)}
+     */
+    DATE,
+    /**
+     * May be parsed by {@link java.time.LocalTime#parse(CharSequence)}
+     */
+    LOCAL_TIME,
+    /**
+     * May be parsed by {@link java.time.OffsetTime#parse(CharSequence)}
+     */
+    OFFSET_TIME,;
+  }
+
+  @Nonnull
+  public static Shape scan(@Nonnull String s) {
+    final int length = s.length();
+    // The shortest possible input is HH:mm
+    if (length < 5) {
+      return Shape.NONE;
+    }
+    final int dateEnd = scanDate(s, 0);
+    if (dateEnd >= 0) {
+      if (dateEnd == length) {
+        return Shape.DATE;
+      }
+      final char separator = s.charAt(dateEnd);
+      if (separator != 'T' && separator != 't') {
+        return Shape.NONE;
+      }
+      final int timeEnd = scanTime(s, dateEnd + 1);
+      if (timeEnd < 0) {
+        return Shape.NONE;
+      }
+      final int offsetEnd = scanOffset(s, timeEnd);
+      // The offset is mandatory for ZonedDateTime
+      if (offsetEnd <= timeEnd) {
+        return Shape.NONE;
+      }
+      if (offsetEnd == length) {
+        return Shape.DATE_TIME;
+      }
+      // Optional [zone-region]
+      return length - offsetEnd > 2 && s.charAt(offsetEnd) == '['
+          && s.charAt(length - 1) == ']' ? Shape.DATE_TIME : Shape.NONE;
+    }
+    final int timeEnd = scanTime(s, 0);
+    if (timeEnd < 0) {
+      return Shape.NONE;
+    }
+    if (timeEnd == length) {
+      return Shape.LOCAL_TIME;
+    }
+    final int offsetEnd = scanOffset(s, timeEnd);
+    return offsetEnd > timeEnd && offsetEnd == length ? Shape.OFFSET_TIME : Shape.NONE;
+  }
+
+  /**
+   * Scan {@code [+-]?yyyy-MM-dd}, where the year has at least 4 digits
+   *
+   * @return The index after the date, or -1 if there is no date at the given index
+   */
+  private static int scanDate(@Nonnull String s, int i) {
+    final int length = s.length();
+    if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+      i++;
+    }
+    final int yearStart = i;
+    while (i < length && isDigit(s.charAt(i))) {
+      i++;
+    }
+    if (i - yearStart < 4) {
+      return -1;
+    }
+    if (!isChar(s, i, '-') || !isDigits(s, i + 1, 2) || !isChar(s, i + 3, '-')
+        || !isDigits(s, i + 4, 2)) {
+      return -1;
+    }
+    return i + 6;
+  }
+
+  /**
+   * Scan {@code HH:mm[:ss[.SSSSSSSSS]]}
+   *
+   * @return The index after the time, or -1 if there is no time at the given index
+   */
+  private static int scanTime(@Nonnull String s, int i) {
+    if (!isDigits(s, i, 2) || !isChar(s, i + 2, ':') || !isDigits(s, i + 3, 2)) {
+      return -1;
+    }
+    i += 5;
+    if (!isChar(s, i, ':')) {
+      return i;
+    }
+    if (!isDigits(s, i + 1, 2)) {
+      return -1;
+    }
+    i += 3;
+    if (!isChar(s, i, '.')) {
+      return i;
+    }
+    i++;
+    final int length = s.length();
+    while (i < length && isDigit(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Scan an offset like {@code Z}, {@code +HH}, {@code +HH:mm} or {@code -HHmmss}
+   *
+   * @return The index after the offset, the same index if there is no offset, or -1 if the offset
+   *         is malformed
+   */
+  private static int scanOffset(@Nonnull String s, int i) {
+    if (i >= s.length()) {
+      return i;
+    }
+    final char c = s.charAt(i);
+    if (c == 'Z' || c == 'z') {
+      return i + 1;
+    }
+    if (c != '+' && c != '-') {
+      return i;
+    }
+    final int length = s.length();
+    int j = i + 1;
+    while (j < length && (isDigit(s.charAt(j)) || s.charAt(j) == ':')) {
+      j++;
+    }
+    return j == i + 1 ? -1 : j;
+  }
+
+  private static boolean isChar(@Nonnull String s, int i, char c) {
+    return i < s.length() && s.charAt(i) == c;
+  }
+
+  private static boolean isDigits(@Nonnull String s, int i, int count) {
+    if (i + count > s.length()) {
+      return false;
+    }
+    for (int j = i; j < i + count; j++) {
+      if (!isDigit(s.charAt(j))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+}
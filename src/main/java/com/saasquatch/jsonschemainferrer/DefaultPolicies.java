@@ -1,6 +1,8 @@
 package com.saasquatch.jsonschemainferrer;
 
 import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nonnull;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.saasquatch.jsonschemainferrer.annotations.Beta;
 
@@ -25,6 +27,9 @@ public final class DefaultPolicies {
    */
   public static DefaultPolicy useFirstSamples() {
     return input -> {
+      if (!input.hasSamples()) {
+        return input.getStats().getFirstSample();
+      }
       final Collection<? extends JsonNode> samples = input.getSamples();
       return samples.stream().findFirst().orElse(null);
     };
@@ -36,9 +41,53 @@ public final class DefaultPolicies {
   @Beta
   public static DefaultPolicy useLastSamples() {
     return input -> {
+      if (!input.hasSamples()) {
+        return input.getStats().getLastSample();
+      }
       final Collection<? extends JsonNode> samples = input.getSamples();
-      return samples.stream().skip(Math.max(0, samples.size() - 1)).findFirst().orElse(null);
+      if (samples instanceof List) {
+        final List<? extends JsonNode> sampleList = (List<? extends JsonNode>) samples;
+        return sampleList.isEmpty() ? null : sampleList.get(sampleList.size() - 1);
+      }
+      JsonNode lastSample = null;
+      for (JsonNode sample : samples) {
+        lastSample = sample;
+      }
+      return lastSample;
     };
   }
 
+  /**
+   * @param seed The seed for the random number generator, so the same samples result in the same
+   *        {@code default}
+   * @return a {@link DefaultPolicy} that uses a uniformly random sample as {@code default}, using
+   *         reservoir sampling so only one sample is kept when the samples are not retained
+   */
+  @Beta
+  public static DefaultPolicy useRandomSamples(long seed) {
+    return new RandomSampleDefaultPolicy(SampleRetention.random(1, seed));
+  }
+
+  private static final class RandomSampleDefaultPolicy
+      implements DefaultPolicy, SampleRetention.Policy {
+
+    private final SampleRetention retention;
+
+    RandomSampleDefaultPolicy(@Nonnull SampleRetention retention) {
+      this.retention = retention;
+    }
+
+    @Override
+    public SampleRetention getSampleRetention() {
+      return retention;
+    }
+
+    @Override
+    public JsonNode getDefault(GenericSchemaFeatureInput input) {
+      final List<JsonNode> samples = input.getRetainedSamples(retention);
+      return samples.isEmpty() ? null : samples.get(0);
+    }
+
+  }
+
 }
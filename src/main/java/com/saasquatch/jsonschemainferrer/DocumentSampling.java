@@ -0,0 +1,235 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
+
+/**
+ * Document-level sampling for {@link JsonSchemaInferrer#inferForSamples(Collection)}, where only a
+ * random subset of the sample JSONs is used for inferring the schema, trading accuracy for speed on
+ * huge collections. The sampling is seeded, so the same samples always result in the same schema.
+ * The selected samples keep their original order.
+ *
+ * @author sli
+ * @see JsonSchemaInferrerBuilder#setDocumentSampling(DocumentSampling)
+ */
+@Beta
+@Immutable
+public final class DocumentSampling {
+
+  private static final DocumentSampling NONE = new DocumentSampling(1, 0, 0, false);
+
+  // Only one of fraction and maxSamples is used
+  private final double fraction;
+  private final int maxSamples;
+  private final long seed;
+  private final boolean stratified;
+
+  private DocumentSampling(double fraction, int maxSamples, long seed, boolean stratified) {
+    this.fraction = fraction;
+    this.maxSamples = maxSamples;
+    this.seed = seed;
+    this.stratified = stratified;
+  }
+
+  /**
+   * @return A singleton {@link DocumentSampling} that uses all the samples
+   */
+  public static DocumentSampling none() {
+    return NONE;
+  }
+
+  /**
+   * @param fraction the fraction of the samples to use, in {@code (0, 1]}. At least one sample is
+   *        always used.
+   * @param seed the seed for the random number generator
+   * @return A {@link DocumentSampling} that uses a random fraction of the samples
+   */
+  public static DocumentSampling fraction(double fraction, long seed) {
+    if (!(fraction > 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("Invalid fraction");
+    }
+    if (fraction == 1) {
+      return NONE;
+    }
+    return new DocumentSampling(fraction, 0, seed, false);
+  }
+
+  /**
+   * @param maxSamples the max number of samples to use
+   * @param seed the seed for the random number generator
+   * @return A {@link DocumentSampling} that uses a fixed-size random subset of the samples
+   */
+  public static DocumentSampling fixedSize(@Nonnegative int maxSamples, long seed) {
+    if (maxSamples < 1) {
+      throw new IllegalArgumentException("Invalid maxSamples");
+    }
+    return new DocumentSampling(0, maxSamples, seed, false);
+  }
+
+  /**
+   * @return A copy of this {@link DocumentSampling} that samples the JSONs of every top-level
+   *         type, e.g. objects and strings, separately and in proportion to the number of JSONs of
+   *         that type, so every top-level type is represented by at least one sample even if it is
+   *         rare. This means that slightly more samples than {@link #fixedSize(int, long)} can be
+   *         used.
+   */
+  public DocumentSampling stratifiedByType() {
+    if (this == NONE || stratified) {
+      return this;
+    }
+    return new DocumentSampling(fraction, maxSamples, seed, true);
+  }
+
+  /**
+   * Pick the samples to use with selection sampling, which makes a single pass over the samples,
+   * plus another pass to count the top-level types if stratified.
+   *
+   * @param budgetTracker the {@link InferenceBudget.Tracker} to check during the passes, or null
+   */
+  @Nonnull
+  Result sample(@Nonnull Collection<? extends JsonNode> samples,
+      @Nullable InferenceBudget.Tracker budgetTracker) {
+    if (this == NONE) {
+      return new Result(samples, null);
+    }
+    final Map<JsonNodeType, Stratum> strata = new EnumMap<>(JsonNodeType.class);
+    int sampleCount = 0;
+    if (stratified) {
+      for (JsonNode sample : samples) {
+        if (budgetTracker != null && (++sampleCount & 0x3FF) == 0) {
+          budgetTracker.check();
+        }
+        strata.computeIfAbsent(getTopLevelType(sample), k -> new Stratum()).total++;
+      }
+    } else {
+      final Stratum stratum = new Stratum();
+      stratum.total = samples.size();
+      strata.put(JsonNodeType.MISSING, stratum);
+    }
+    int selectedCount = 0;
+    for (Stratum stratum : strata.values()) {
+      stratum.selected = getSampleSize(stratum.total, samples.size());
+      stratum.remainingToSelect = stratum.selected;
+      selectedCount += stratum.selected;
+    }
+    if (selectedCount == samples.size()) {
+      return new Result(samples, null);
+    }
+    final Random random = new Random(seed);
+    final List<JsonNode> selectedSamples = new ArrayList<>(selectedCount);
+    sampleCount = 0;
+    for (JsonNode sample : samples) {
+      if (selectedSamples.size() == selectedCount) {
+        break;
+      }
+      if (budgetTracker != null && (++sampleCount & 0x3FF) == 0) {
+        budgetTracker.check();
+      }
+      final Stratum stratum =
+          strata.get(stratified ? getTopLevelType(sample) : JsonNodeType.MISSING);
+      if (stratum.remainingToSelect > 0
+          && random.nextInt(stratum.remainingToConsider()) < stratum.remainingToSelect) {
+        selectedSamples.add(sample);
+        stratum.remainingToSelect--;
+      }
+      stratum.considered++;
+    }
+    return new Result(selectedSamples, getComment(strata));
+  }
+
+  /**
+   * @return The number of samples to pick out of the given number of samples
+   */
+  private int getSampleSize(int total, int allTotal) {
+    final long size;
+    if (maxSamples > 0) {
+      size = stratified ? Math.round((double) maxSamples * total / allTotal) : maxSamples;
+    } else {
+      size = (long) Math.ceil(fraction * total);
+    }
+    return (int) Math.min(total, Math.max(1, size));
+  }
+
+  @Nonnull
+  private String getComment(@Nonnull Map<JsonNodeType, Stratum> strata) {
+    final StringBuilder sb = new StringBuilder("Inferred from a sample of ");
+    boolean first = true;
+    for (Map.Entry<JsonNodeType, Stratum> entry : strata.entrySet()) {
+      final Stratum stratum = entry.getValue();
+      if (stratified && stratum.selected == stratum.total) {
+        // Only report the parts that come from sampled data
+        continue;
+      }
+      if (!first) {
+        sb.append(", ");
+      }
+      first = false;
+      sb.append(stratum.selected).append(" out of ").append(stratum.total);
+      if (stratified) {
+        sb.append(' ').append(entry.getKey().name().toLowerCase(Locale.ROOT));
+      }
+      sb.append(" JSONs");
+    }
+    return sb.toString();
+  }
+
+  @Nonnull
+  private static JsonNodeType getTopLevelType(@Nullable JsonNode sample) {
+    return sample == null ? JsonNodeType.NULL : sample.getNodeType();
+  }
+
+  private static final class Stratum {
+
+    int total;
+    int considered;
+    int selected;
+    int remainingToSelect;
+
+    int remainingToConsider() {
+      return total - considered;
+    }
+
+  }
+
+  /**
+   * The samples picked. NOT PUBLIC.
+   */
+  static final class Result {
+
+    private final Collection<? extends JsonNode> samples;
+    private final String comment;
+
+    Result(@Nonnull Collection<? extends JsonNode> samples, @Nullable String comment) {
+      this.samples = samples;
+      this.comment = comment;
+    }
+
+    @Nonnull
+    public Collection<? extends JsonNode> getSamples() {
+      return samples;
+    }
+
+    /**
+     * @return A description of which parts of the samples were sampled, or null if all the
+     *         samples are used
+     */
+    @Nullable
+    public String getComment() {
+      return comment;
+    }
+
+  }
+
+}
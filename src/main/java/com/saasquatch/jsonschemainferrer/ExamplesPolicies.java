@@ -1,10 +1,12 @@
 package com.saasquatch.jsonschemainferrer;
 
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newArray;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.saasquatch.jsonschemainferrer.annotations.Beta;
 
@@ -47,17 +49,76 @@ public final class ExamplesPolicies {
     if (limit == 0) {
       return noOp();
     }
-    return input -> {
+    return new RetainingExamplesPolicy(SampleRetention.firstDistinct(limit), typePredicate);
+  }
+
+  /**
+   * @return An {@link ExamplesPolicy} that takes the last samples with a limit. Only the last
+   *         samples are kept when the samples are not retained.
+   */
+  @Beta
+  public static ExamplesPolicy useLastSamples(@Nonnegative int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Invalid limit");
+    }
+    if (limit == 0) {
+      return noOp();
+    }
+    return new RetainingExamplesPolicy(SampleRetention.last(limit), type -> true);
+  }
+
+  /**
+   * @param seed The seed for the random number generator, so the same samples result in the same
+   *        examples
+   * @return An {@link ExamplesPolicy} that takes uniformly random samples with a limit, using
+   *         reservoir sampling so only the limit number of samples are kept when the samples are
+   *         not retained. The examples are in the order of the samples.
+   */
+  @Beta
+  public static ExamplesPolicy useRandomSamples(@Nonnegative int limit, long seed) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Invalid limit");
+    }
+    if (limit == 0) {
+      return noOp();
+    }
+    return new RetainingExamplesPolicy(SampleRetention.random(limit, seed), type -> true);
+  }
+
+  private static final class RetainingExamplesPolicy
+      implements ExamplesPolicy, SampleRetention.Policy {
+
+    private final SampleRetention retention;
+    private final Predicate<String> typePredicate;
+
+    RetainingExamplesPolicy(@Nonnull SampleRetention retention,
+        @Nonnull Predicate<String> typePredicate) {
+      this.retention = retention;
+      this.typePredicate = typePredicate;
+    }
+
+    @Override
+    public SampleRetention getSampleRetention() {
+      return retention;
+    }
+
+    @Override
+    public JsonNode getExamples(GenericSchemaFeatureInput input) {
       if (input.getSpecVersion().compareTo(SpecVersion.DRAFT_06) < 0) {
         return null;
       }
       if (!typePredicate.test(input.getType())) {
         return null;
       }
+      final List<JsonNode> samples = input.getRetainedSamples(retention);
+      if (samples.isEmpty()) {
+        return null;
+      }
       final ArrayNode result = newArray();
-      input.getSamples().stream().distinct().limit(limit).forEach(result::add);
-      return result.size() == 0 ? null : result;
-    };
+      samples.forEach(result::add);
+      return result;
+    }
+
   }
 
 }
@@ -1,7 +1,9 @@
 package com.saasquatch.jsonschemainferrer;
 
 import java.util.Objects;
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
 
 /**
  * Utilities for {@link FormatInferrer}s
@@ -44,6 +46,32 @@ public final class FormatInferrers {
     return BuiltInFormatInferrer.IP;
   }
 
+  /**
+   * This {@link FormatInferrer} requires commons-validator dependency!
+   *
+   * @return a singleton {@link FormatInferrer} that gives the same results as
+   *         {@code chained(dateTime(), email(), ip())}, but classifies every string in a single
+   *         pass and only runs the full validation for the candidate formats.
+   */
+  @Beta
+  public static FormatInferrer fastAll() {
+    return BuiltInFormatInferrer.FAST_ALL;
+  }
+
+  /**
+   * @param formatInferrer The {@link FormatInferrer} to cache the results of
+   * @param maxEntries The maximum number of results to keep
+   * @return A {@link CachingFormatInferrer} that memoizes the results of the given
+   *         {@link FormatInferrer} for textual samples, evicting the least recently used results
+   *         once more than {@code maxEntries} distinct strings are seen.
+   * @throws IllegalArgumentException if {@code maxEntries} is not positive
+   */
+  @Beta
+  public static CachingFormatInferrer cached(@Nonnull FormatInferrer formatInferrer,
+      @Nonnegative int maxEntries) {
+    return new CachingFormatInferrer(formatInferrer, maxEntries);
+  }
+
   /**
    * @return A {@link FormatInferrer} that uses the given {@link FormatInferrer}s in the original
    *         order, and uses the first non-null result available.
@@ -0,0 +1,138 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.numberNode;
+import java.io.Serializable;
+import java.math.BigInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+/**
+ * Running GCD of integer number samples. The GCD is kept in a {@code long} and computed with the
+ * binary GCD algorithm, and {@link BigInteger}s are only used for values that do not fit in a
+ * {@code long}. Once the GCD reaches 1, further samples are ignored, since it cannot change
+ * anymore. NOT PUBLIC.
+ *
+ * @author sli
+ */
+@NotThreadSafe
+final class GcdAccumulator implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // The non-negative GCD so far if it fits in a long. 0 if there are no non-zero numbers yet.
+  private long longGcd;
+  // The GCD so far if it does not fit in a long, in which case longGcd is unused
+  private BigInteger bigGcd;
+
+  GcdAccumulator() {}
+
+  /**
+   * Add a number sample that is a mathematical integer
+   */
+  public void add(@Nonnull JsonNode sample) {
+    if (isOne()) {
+      return;
+    }
+    if (sample.isIntegralNumber() && !sample.isBigInteger()) {
+      addLong(sample.longValue());
+      return;
+    }
+    if (sample.isFloat() || sample.isDouble()) {
+      final double doubleValue = sample.doubleValue();
+      if (Math.abs(doubleValue) < 0x1p63) {
+        // Exact since the value is a mathematical integer
+        addLong((long) doubleValue);
+        return;
+      }
+    }
+    addBigInteger(sample.bigIntegerValue());
+  }
+
+  public void merge(@Nonnull GcdAccumulator other) {
+    if (isOne()) {
+      return;
+    }
+    if (other.bigGcd == null) {
+      addLong(other.longGcd);
+    } else {
+      addBigInteger(other.bigGcd);
+    }
+  }
+
+  /**
+   * @return The GCD, or null if there are no non-zero numbers
+   */
+  @Nullable
+  public JsonNode getGcd() {
+    if (bigGcd != null) {
+      return numberNode(bigGcd);
+    } else if (longGcd == 0) {
+      return null;
+    } else if (longGcd <= Integer.MAX_VALUE) {
+      return JsonNodeFactory.instance.numberNode((int) longGcd);
+    }
+    return JsonNodeFactory.instance.numberNode(longGcd);
+  }
+
+  private boolean isOne() {
+    return bigGcd == null && longGcd == 1;
+  }
+
+  private void addLong(long value) {
+    // The absolute value of Long.MIN_VALUE does not fit in a long
+    if (bigGcd == null && value != Long.MIN_VALUE) {
+      longGcd = binaryGcd(longGcd, Math.abs(value));
+    } else {
+      setGcd(toBigInteger().gcd(BigInteger.valueOf(value)));
+    }
+  }
+
+  private void addBigInteger(@Nonnull BigInteger value) {
+    if (value.bitLength() < Long.SIZE) {
+      addLong(value.longValue());
+    } else {
+      setGcd(toBigInteger().gcd(value));
+    }
+  }
+
+  @Nonnull
+  private BigInteger toBigInteger() {
+    return bigGcd == null ? BigInteger.valueOf(longGcd) : bigGcd;
+  }
+
+  private void setGcd(@Nonnull BigInteger gcd) {
+    if (gcd.bitLength() < Long.SIZE) {
+      longGcd = gcd.longValue();
+      bigGcd = null;
+    } else {
+      bigGcd = gcd;
+    }
+  }
+
+  /**
+   * Stein's algorithm for non-negative longs
+   */
+  private static long binaryGcd(long a, long b) {
+    if (a == 0) {
+      return b;
+    } else if (b == 0) {
+      return a;
+    }
+    final int shift = Long.numberOfTrailingZeros(a | b);
+    a >>= Long.numberOfTrailingZeros(a);
+    do {
+      b >>= Long.numberOfTrailingZeros(b);
+      if (a > b) {
+        final long temp = a;
+        a = b;
+        b = temp;
+      }
+      b -= a;
+    } while (b != 0);
+    return a << shift;
+  }
+
+}
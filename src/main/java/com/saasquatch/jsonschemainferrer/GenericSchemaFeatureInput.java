@@ -1,6 +1,10 @@
 package com.saasquatch.jsonschemainferrer;
 
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.nonNull;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -14,15 +18,25 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 public final class GenericSchemaFeatureInput {
 
   private final ObjectNode schema;
+  // Null if the samples are not retained
   private final Collection<? extends JsonNode> samples;
+  // Lazily computed from the samples if not provided
+  private SampleStats stats;
   private final String type;
   private final SpecVersion specVersion;
 
   GenericSchemaFeatureInput(@Nonnull ObjectNode schema,
       @Nonnull Collection<? extends JsonNode> samples, @Nullable String type,
       @Nonnull SpecVersion specVersion) {
+    this(schema, samples, null, type, specVersion);
+  }
+
+  GenericSchemaFeatureInput(@Nonnull ObjectNode schema,
+      @Nullable Collection<? extends JsonNode> samples, @Nullable SampleStats stats,
+      @Nullable String type, @Nonnull SpecVersion specVersion) {
     this.schema = schema;
     this.samples = samples;
+    this.stats = stats;
     this.type = type;
     this.specVersion = specVersion;
   }
@@ -38,12 +52,76 @@ public final class GenericSchemaFeatureInput {
 
   /**
    * @return The current samples
+   * @throws IllegalStateException if the samples are not retained, e.g. when inferring with a
+   *         {@link SchemaAccumulator}
    */
   @Nonnull
   public Collection<? extends JsonNode> getSamples() {
+    if (samples == null) {
+      throw new IllegalStateException(
+          "Samples are not retained by " + SchemaAccumulator.class.getSimpleName());
+    }
     return samples;
   }
 
+  /**
+   * @return Whether the current samples are available through {@link #getSamples()}
+   */
+  boolean hasSamples() {
+    return samples != null;
+  }
+
+  /**
+   * @return The {@link SampleStats} of the current samples. If the samples are retained, the
+   *         {@link SampleStats} are computed in a single pass over the samples the first time this
+   *         is called, unless they are already provided, so all the built-in features share that
+   *         one pass.
+   */
+  @Nonnull
+  SampleStats getStats() {
+    if (stats == null) {
+      stats = new SampleStats();
+      long index = 0;
+      for (JsonNode sample : samples) {
+        if (sample.isObject()) {
+          stats.addContainer(sample.size());
+          final Iterator<Map.Entry<String, JsonNode>> fields = sample.fields();
+          while (fields.hasNext()) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey() != null && field.getValue() != null) {
+              stats.addField(field.getKey(), nonNull(field.getValue()));
+            }
+          }
+        } else if (sample.isArray()) {
+          stats.addContainer(sample.size());
+        } else {
+          stats.addPrimitive(sample, index++);
+        }
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * @return The current samples kept with the given {@link SampleRetention}, in the order they
+   *         appear. If the samples are retained, they are picked from the samples in a single pass
+   *         that stops as soon as no more samples can be kept.
+   * @throws IllegalStateException if the samples are not retained and the {@link SampleStats} do
+   *         not keep samples with the given {@link SampleRetention}
+   */
+  @Nonnull
+  List<JsonNode> getRetainedSamples(@Nonnull SampleRetention retention) {
+    if (samples != null) {
+      return retention.select(samples);
+    }
+    final List<JsonNode> retainedSamples = getStats().getRetainedSamples(retention);
+    if (retainedSamples == null) {
+      throw new IllegalStateException(
+          "Samples are not retained by " + SchemaAccumulator.class.getSimpleName());
+    }
+    return retainedSamples;
+  }
+
   /**
    * @return The current type, if available
    */
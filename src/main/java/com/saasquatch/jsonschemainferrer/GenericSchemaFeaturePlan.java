@@ -0,0 +1,209 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The {@link GenericSchemaFeature}s of a {@link JsonSchemaInferrer}, compiled into the list of
+ * steps to run for every schema type. The built-in features and policies only ever produce results
+ * for some types, so they are only run for those types, and they write their results directly into
+ * a single result object shared by all the steps instead of allocating one for every feature.
+ * Custom {@link GenericSchemaFeature}s are run for all the types. The results are identical to
+ * {@link GenericSchemaFeatures#chained(GenericSchemaFeature...)}. NOT PUBLIC.
+ *
+ * @author sli
+ */
+@Immutable
+final class GenericSchemaFeaturePlan {
+
+  // The indexes of the types in the plan
+  private static final int NO_TYPE = 0, OBJECT = 1, ARRAY = 2, STRING = 3, NUMBER = 4,
+      INTEGER = 5, BOOLEAN = 6, NULL = 7, OTHER_TYPE = 8, TYPE_COUNT = 9;
+
+  private static final Step[] NO_STEPS = new Step[0];
+
+  private final Step[][] stepsByType;
+  // The sample retentions the built-in policies need when the samples are not retained
+  private final List<SampleRetention> sampleRetentions;
+
+  /**
+   * @param features the features, in the order of the results to be applied
+   */
+  GenericSchemaFeaturePlan(@Nonnull List<GenericSchemaFeature> features) {
+    final List<List<Step>> stepLists = new ArrayList<>(TYPE_COUNT);
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      stepLists.add(new ArrayList<>());
+    }
+    final List<SampleRetention> sampleRetentions = new ArrayList<>();
+    for (GenericSchemaFeature feature : features) {
+      compile(feature, stepLists);
+      if (feature instanceof SampleRetention.Policy) {
+        final SampleRetention retention = ((SampleRetention.Policy) feature).getSampleRetention();
+        if (!sampleRetentions.contains(retention)) {
+          sampleRetentions.add(retention);
+        }
+      }
+    }
+    this.sampleRetentions = sampleRetentions.isEmpty() ? Collections.emptyList()
+        : Collections.unmodifiableList(sampleRetentions);
+    this.stepsByType = new Step[TYPE_COUNT][];
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      final List<Step> steps = stepLists.get(i);
+      stepsByType[i] = steps.isEmpty() ? NO_STEPS : steps.toArray(NO_STEPS);
+    }
+  }
+
+  /**
+   * @return Whether there is anything to run for the given type
+   */
+  public boolean hasSteps(@Nullable String type) {
+    return stepsByType[typeIndex(type)].length > 0;
+  }
+
+  /**
+   * @return The {@link SampleRetention}s whose samples need to be kept for the primitives when the
+   *         samples are not retained
+   */
+  @Nonnull
+  public List<SampleRetention> getSampleRetentions() {
+    return sampleRetentions;
+  }
+
+  /**
+   * Run all the steps for the type of the given input
+   *
+   * @return The combined result, or null if there are no results
+   */
+  @Nullable
+  public ObjectNode getFeatureResult(@Nonnull GenericSchemaFeatureInput input) {
+    final Step[] steps = stepsByType[typeIndex(input.getType())];
+    if (steps.length == 0) {
+      return null;
+    }
+    final ObjectNode result = newObject();
+    for (Step step : steps) {
+      step.addFeatureResult(input, result);
+    }
+    return result.isEmpty() ? null : result;
+  }
+
+  private static void compile(@Nonnull GenericSchemaFeature feature,
+      @Nonnull List<List<Step>> stepLists) {
+    if (feature instanceof StringLengthFeature) {
+      stepLists.get(STRING).add(((StringLengthFeature) feature)::addFeatureResult);
+    } else if (feature instanceof NumberRangeFeature) {
+      final Step step = ((NumberRangeFeature) feature)::addFeatureResult;
+      stepLists.get(NUMBER).add(step);
+      stepLists.get(INTEGER).add(step);
+    } else if (feature instanceof ArrayLengthFeature) {
+      stepLists.get(ARRAY).add(((ArrayLengthFeature) feature)::addFeatureResult);
+    } else if (feature instanceof ObjectSizeFeature) {
+      stepLists.get(OBJECT).add(((ObjectSizeFeature) feature)::addFeatureResult);
+    } else if (isDefaultFeatureResult(feature, AdditionalPropertiesPolicy.class)) {
+      final AdditionalPropertiesPolicy policy = (AdditionalPropertiesPolicy) feature;
+      stepLists.get(OBJECT).add((input, result) -> setIfNotNull(result,
+          Consts.Fields.ADDITIONAL_PROPERTIES, policy.getAdditionalProperties(input)));
+    } else if (isDefaultFeatureResult(feature, RequiredPolicy.class)) {
+      final RequiredPolicy policy = (RequiredPolicy) feature;
+      stepLists.get(OBJECT).add((input, result) -> setIfNotNull(result, Consts.Fields.REQUIRED,
+          policy.getRequired(input)));
+    } else if (isDefaultFeatureResult(feature, MultipleOfPolicy.class)) {
+      final MultipleOfPolicy policy = (MultipleOfPolicy) feature;
+      final Step step = (input, result) -> setIfNotNull(result, Consts.Fields.MULTIPLE_OF,
+          policy.getMultipleOf(input));
+      stepLists.get(NUMBER).add(step);
+      stepLists.get(INTEGER).add(step);
+    } else if (isDefaultFeatureResult(feature, DefaultPolicy.class)) {
+      final DefaultPolicy policy = (DefaultPolicy) feature;
+      addForNonContainerTypes(stepLists, (input, result) -> setIfNotNull(result,
+          Consts.Fields.DEFAULT, policy.getDefault(input)));
+    } else if (isDefaultFeatureResult(feature, ExamplesPolicy.class)) {
+      final ExamplesPolicy policy = (ExamplesPolicy) feature;
+      addForNonContainerTypes(stepLists, (input, result) -> setIfNotNull(result,
+          Consts.Fields.EXAMPLES, policy.getExamples(input)));
+    } else {
+      final Step step = (input, result) -> {
+        final ObjectNode featureResult = feature.getFeatureResult(input);
+        if (featureResult != null) {
+          result.setAll(featureResult);
+        }
+      };
+      for (List<Step> steps : stepLists) {
+        steps.add(step);
+      }
+    }
+  }
+
+  /**
+   * @return Whether the given feature is an instance of the given policy interface that uses the
+   *         default implementation of {@link GenericSchemaFeature#getFeatureResult}, which is
+   *         always the case for lambdas
+   */
+  private static boolean isDefaultFeatureResult(@Nonnull GenericSchemaFeature feature,
+      @Nonnull Class<? extends GenericSchemaFeature> policyClass) {
+    if (!policyClass.isInstance(feature)) {
+      return false;
+    }
+    try {
+      return feature.getClass().getMethod("getFeatureResult", GenericSchemaFeatureInput.class)
+          .getDeclaringClass() == policyClass;
+    } catch (NoSuchMethodException | SecurityException e) {
+      return false;
+    }
+  }
+
+  private static void addForNonContainerTypes(@Nonnull List<List<Step>> stepLists,
+      @Nonnull Step step) {
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      if (i != NO_TYPE && i != OBJECT && i != ARRAY) {
+        stepLists.get(i).add(step);
+      }
+    }
+  }
+
+  private static void setIfNotNull(@Nonnull ObjectNode result, @Nonnull String fieldName,
+      @Nullable JsonNode value) {
+    if (value != null) {
+      result.set(fieldName, value);
+    }
+  }
+
+  private static int typeIndex(@Nullable String type) {
+    if (type == null) {
+      return NO_TYPE;
+    }
+    switch (type) {
+      case Consts.Types.OBJECT:
+        return OBJECT;
+      case Consts.Types.ARRAY:
+        return ARRAY;
+      case Consts.Types.STRING:
+        return STRING;
+      case Consts.Types.NUMBER:
+        return NUMBER;
+      case Consts.Types.INTEGER:
+        return INTEGER;
+      case Consts.Types.BOOLEAN:
+        return BOOLEAN;
+      case Consts.Types.NULL:
+        return NULL;
+      default:
+        return OTHER_TYPE;
+    }
+  }
+
+  @FunctionalInterface
+  private interface Step {
+
+    void addFeatureResult(@Nonnull GenericSchemaFeatureInput input, @Nonnull ObjectNode result);
+
+  }
+
+}
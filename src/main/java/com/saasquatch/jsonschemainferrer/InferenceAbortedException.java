@@ -0,0 +1,21 @@
+package com.saasquatch.jsonschemainferrer;
+
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
+
+/**
+ * Thrown when an inference is aborted because its {@link InferenceBudget} is used up or it is
+ * cancelled. No partial schema is produced.
+ *
+ * @author sli
+ * @see InferenceBudget
+ */
+@Beta
+public final class InferenceAbortedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  InferenceAbortedException(String message) {
+    super(message);
+  }
+
+}
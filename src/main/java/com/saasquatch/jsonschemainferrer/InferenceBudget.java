@@ -0,0 +1,138 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
+
+/**
+ * Limits on a single call of {@link JsonSchemaInferrer#inferForSamples(java.util.Collection)}, so a
+ * pathological input, e.g. a huge array or deeply nested JSON, cannot keep the calling thread busy
+ * indefinitely. The budget is checked cooperatively as the samples are walked, and the inference
+ * is aborted with an {@link InferenceAbortedException} once any of the limits is reached.
+ *
+ * @author sli
+ * @see JsonSchemaInferrerBuilder#setInferenceBudget(InferenceBudget)
+ * @see JsonSchemaInferrer#inferForSamples(java.util.Collection, InferenceBudget)
+ */
+@Beta
+@Immutable
+public final class InferenceBudget {
+
+  private static final InferenceBudget UNLIMITED = new InferenceBudget(0, 0, null);
+
+  // 0 for no limit
+  private final long maxNanos;
+  // 0 for no limit
+  private final long maxNodes;
+  // Null for no cancellation
+  private final BooleanSupplier cancellation;
+
+  private InferenceBudget(long maxNanos, long maxNodes, @Nullable BooleanSupplier cancellation) {
+    this.maxNanos = maxNanos;
+    this.maxNodes = maxNodes;
+    this.cancellation = cancellation;
+  }
+
+  /**
+   * @return A singleton {@link InferenceBudget} without any limits
+   */
+  public static InferenceBudget unlimited() {
+    return UNLIMITED;
+  }
+
+  /**
+   * @return A copy of this {@link InferenceBudget} with the max wall time of a single inference
+   */
+  public InferenceBudget withMaxDuration(@Nonnull Duration maxDuration) {
+    if (maxDuration.isNegative() || maxDuration.isZero()) {
+      throw new IllegalArgumentException("Invalid maxDuration");
+    }
+    final long maxNanos = maxDuration.compareTo(Duration.ofNanos(Long.MAX_VALUE)) >= 0
+        ? Long.MAX_VALUE : maxDuration.toNanos();
+    return new InferenceBudget(maxNanos, maxNodes, cancellation);
+  }
+
+  /**
+   * @return A copy of this {@link InferenceBudget} with the max number of JSON nodes visited by a
+   *         single inference. Every node of the samples, i.e. every sample, field value and array
+   *         element at any depth, is counted once when the values at its path are handled, so
+   *         this is about the total number of nodes in the samples, or in the samples picked by
+   *         {@link DocumentSampling}.
+   */
+  public InferenceBudget withMaxNodes(@Nonnegative long maxNodes) {
+    if (maxNodes < 1) {
+      throw new IllegalArgumentException("Invalid maxNodes");
+    }
+    return new InferenceBudget(maxNanos, maxNodes, cancellation);
+  }
+
+  /**
+   * @param cancellation The cancellation token, which returns true once the inference should be
+   *        cancelled, e.g. {@code future::isCancelled}. It is called from the threads doing the
+   *        inference, so it has to be thread safe if parallelism is enabled.
+   * @return A copy of this {@link InferenceBudget} with the given cancellation token
+   */
+  public InferenceBudget withCancellation(@Nonnull BooleanSupplier cancellation) {
+    return new InferenceBudget(maxNanos, maxNodes, Objects.requireNonNull(cancellation));
+  }
+
+  /**
+   * @return A new {@link Tracker} for a single inference starting now, or null if there are no
+   *         limits
+   */
+  @Nullable
+  Tracker start() {
+    return this == UNLIMITED ? null : new Tracker(this);
+  }
+
+  /**
+   * Keeps track of the budget used by a single inference. NOT PUBLIC.
+   */
+  @ThreadSafe
+  static final class Tracker {
+
+    private final InferenceBudget budget;
+    private final long startNanos;
+    private final AtomicLong nodeCount = new AtomicLong();
+
+    Tracker(@Nonnull InferenceBudget budget) {
+      this.budget = budget;
+      this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Count the given number of visited nodes and check the budget
+     *
+     * @throws InferenceAbortedException if the budget is used up
+     */
+    public void visit(@Nonnegative int nodes) {
+      if (budget.maxNodes > 0 && nodeCount.addAndGet(nodes) > budget.maxNodes) {
+        throw new InferenceAbortedException("Inference exceeded the max nodes");
+      }
+      check();
+    }
+
+    /**
+     * Check the time and the cancellation token
+     *
+     * @throws InferenceAbortedException if the budget is used up
+     */
+    public void check() {
+      if (budget.maxNanos > 0 && System.nanoTime() - startNanos > budget.maxNanos) {
+        throw new InferenceAbortedException("Inference exceeded the max duration");
+      }
+      if (budget.cancellation != null && budget.cancellation.getAsBoolean()) {
+        throw new InferenceAbortedException("Inference was cancelled");
+      }
+    }
+
+  }
+
+}
@@ -1,31 +1,52 @@
 package com.saasquatch.jsonschemainferrer;
 
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.elementsView;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.filteredView;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.format;
-import static com.saasquatch.jsonschemainferrer.JunkDrawer.getAllFieldNames;
-import static com.saasquatch.jsonschemainferrer.JunkDrawer.getAllValuesForFieldName;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.groupValuesByFieldName;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.isNull;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.isTextualFloat;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.mappedView;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newArray;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.stream;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.stringColToArrayDistinct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
 import com.saasquatch.jsonschemainferrer.annotations.VisibleForTesting;
 
 /**
@@ -35,31 +56,61 @@ import com.saasquatch.jsonschemainferrer.annotations.VisibleForTesting;
  * @see #newBuilder()
  * @see #inferForSample(JsonNode)
  * @see #inferForSamples(Collection)
+ * @see #newSchemaAccumulator()
+ * @see #inferForSummary(SchemaSummary)
+ * @see #inferFromStream(InputStream)
+ * @see #toSchemaCollector()
+ * @see #inferTo(Writer, Collection)
  */
 @Immutable
 public final class JsonSchemaInferrer {
 
+  private static final JsonFactory JSON_FACTORY =
+      new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  // The max number of nested Inferences for forked tasks, beyond which nothing is forked
+  private static final int MAX_FORK_DEPTH = 16;
+
   // All the fields are non-null
   private final SpecVersion specVersion;
   private final IntegerTypePreference integerTypePreference;
   private final IntegerTypeCriterion integerTypeCriterion;
   private final EnumExtractor enumExtractor;
   private final TitleDescriptionGenerator titleDescriptionGenerator;
-  private final FormatInferrer formatInferrer;
-  private final GenericSchemaFeature genericSchemaFeature;
+  // Supplies the FormatInferrer for every path
+  private final Supplier<FormatInferrer> pathFormatInferrerSupplier;
+  private final GenericSchemaFeaturePlan genericSchemaFeaturePlan;
+  private final DocumentSampling documentSampling;
+  private final InferenceBudget inferenceBudget;
+  // Null if repeated subschemas are not extracted into definitions
+  @Nullable
+  private final SubschemaDefinitions subschemaDefinitions;
+  // Null if parallelism is not enabled
+  @Nullable
+  private final ForkJoinPool forkJoinPool;
+  private final int parallelismThreshold;
 
   JsonSchemaInferrer(@Nonnull SpecVersion specVersion,
       @Nonnull IntegerTypePreference integerTypePreference,
       @Nonnull IntegerTypeCriterion integerTypeCriterion, @Nonnull EnumExtractor enumExtractor,
       @Nonnull TitleDescriptionGenerator titleDescriptionGenerator,
-      @Nonnull FormatInferrer formatInferrer, @Nonnull GenericSchemaFeature genericSchemaFeature) {
+      @Nonnull Supplier<FormatInferrer> pathFormatInferrerSupplier,
+      @Nonnull GenericSchemaFeaturePlan genericSchemaFeaturePlan,
+      @Nonnull DocumentSampling documentSampling, @Nonnull InferenceBudget inferenceBudget,
+      @Nullable SubschemaDefinitions subschemaDefinitions, @Nullable ForkJoinPool forkJoinPool,
+      int parallelismThreshold) {
     this.specVersion = specVersion;
     this.integerTypePreference = integerTypePreference;
     this.integerTypeCriterion = integerTypeCriterion;
     this.enumExtractor = enumExtractor;
     this.titleDescriptionGenerator = titleDescriptionGenerator;
-    this.formatInferrer = formatInferrer;
-    this.genericSchemaFeature = genericSchemaFeature;
+    this.pathFormatInferrerSupplier = pathFormatInferrerSupplier;
+    this.genericSchemaFeaturePlan = genericSchemaFeaturePlan;
+    this.documentSampling = documentSampling;
+    this.inferenceBudget = inferenceBudget;
+    this.subschemaDefinitions = subschemaDefinitions;
+    this.forkJoinPool = forkJoinPool;
+    this.parallelismThreshold = parallelismThreshold;
   }
 
   /**
@@ -82,34 +133,231 @@ public final class JsonSchemaInferrer {
   }
 
   /**
-   * Infer the JSON schema from multiple sample JSONs.
+   * Infer the JSON schema from multiple sample JSONs. Only some of the sample JSONs are used if
+   * {@link JsonSchemaInferrerBuilder#setDocumentSampling(DocumentSampling)} is configured.
    *
    * @param samples the sample JSONs
    * @return the inferred JSON schema
+   * @throws InferenceAbortedException if the {@link InferenceBudget} set with
+   *         {@link JsonSchemaInferrerBuilder#setInferenceBudget(InferenceBudget)} is used up
    */
   @Nonnull
   public ObjectNode inferForSamples(@Nonnull Collection<? extends JsonNode> samples) {
+    return inferForSamples(samples, inferenceBudget);
+  }
+
+  /**
+   * Infer the JSON schema from multiple sample JSONs with the given {@link InferenceBudget}
+   * instead of the one set with {@link JsonSchemaInferrerBuilder#setInferenceBudget}.
+   *
+   * @param samples the sample JSONs
+   * @param budget the limits of this inference
+   * @return the inferred JSON schema
+   * @throws InferenceAbortedException if the budget is used up
+   */
+  @Beta
+  @Nonnull
+  public ObjectNode inferForSamples(@Nonnull Collection<? extends JsonNode> samples,
+      @Nonnull InferenceBudget budget) {
     if (samples.isEmpty()) {
       throw new IllegalArgumentException("Unable to process empty samples");
     }
+    // Started here so the time spent waiting for the pool counts as well
+    final InferenceBudget.Tracker budgetTracker = budget.start();
+    if (forkJoinPool != null && ForkJoinTask.getPool() != forkJoinPool) {
+      // Make sure the forked tasks all run in the configured pool
+      return forkJoinPool.invoke(ForkJoinTask.adapt(() -> inferForSamples(samples, budgetTracker)));
+    }
+    return inferForSamples(samples, budgetTracker);
+  }
+
+  @Nonnull
+  private ObjectNode inferForSamples(@Nonnull Collection<? extends JsonNode> samples,
+      @Nullable InferenceBudget.Tracker budgetTracker) {
+    final DocumentSampling.Result sampled = documentSampling.sample(samples, budgetTracker);
     final Collection<JsonNode> processedSamples =
-        samples.stream().map(this::preProcessSample).collect(Collectors.toList());
+        mappedView(sampled.getSamples(), this::preProcessSample);
     final ObjectNode schema = newObject();
     schema.put(Consts.Fields.DOLLAR_SCHEMA, specVersion.getMetaSchemaUrl());
-    final Set<ObjectNode> anyOfs = getAnyOfsFromSamples(processedSamples);
+    final Set<ObjectNode> anyOfs =
+        new Inference(budgetTracker, 0).getAnyOfsFromSamples(processedSamples);
     // anyOfs cannot be empty here, since we force inputs to be non empty
     assert !anyOfs.isEmpty() : "empty anyOfs encountered in inferForSamples";
-    switch (anyOfs.size()) {
-      case 1:
-        schema.setAll(anyOfs.iterator().next());
-        // No need to call processGenericSchemaFeature since this is an existing schema
-        break;
-      default: {
-        schema.set(Consts.Fields.ANY_OF, newArray(anyOfs));
-        // This is an anyOf schema. No type available.
-        processGenericSchemaFeature(schema, processedSamples, null);
-        break;
-      }
+    setAnyOfs(schema, anyOfs, processedSamples, null);
+    if (sampled.getComment() != null) {
+      // $comment only exists in draft-07 and above
+      final String fieldName = specVersion.compareTo(SpecVersion.DRAFT_07) >= 0
+          ? Consts.Fields.DOLLAR_COMMENT : Consts.Fields.DESCRIPTION;
+      final JsonNode existingText = schema.get(fieldName);
+      schema.put(fieldName, existingText == null ? sampled.getComment()
+          : existingText.asText() + ' ' + sampled.getComment());
+    }
+    if (subschemaDefinitions != null) {
+      subschemaDefinitions.extract(schema);
+    }
+    return schema;
+  }
+
+  /**
+   * @return A {@link Collector} that infers the JSON schema from the sample JSONs of a
+   *         {@link java.util.stream.Stream}. The samples are summarized with
+   *         {@link SchemaAccumulator}s and not retained, and the partial summaries are merged when
+   *         collecting a parallel stream. The result is the same as
+   *         {@link #inferForSamples(Collection)} with the samples of the stream in encounter order,
+   *         except that random samples picked by {@link ExamplesPolicies} and
+   *         {@link DefaultPolicies} can differ when collecting a parallel stream. The collector
+   *         throws {@link IllegalArgumentException} if the stream is empty.
+   * @throws IllegalStateException if this inferrer uses {@link EnumExtractor}s
+   * @see SchemaAccumulator
+   */
+  @Beta
+  @Nonnull
+  public Collector<JsonNode, ?, ObjectNode> toSchemaCollector() {
+    checkSchemaAccumulatorSupported();
+    return Collector.of(() -> new SchemaAccumulator(this), SchemaAccumulator::add,
+        SchemaAccumulator::merge, accumulator -> {
+          if (accumulator.getSampleCount() == 0) {
+            throw new IllegalArgumentException("Unable to process empty samples");
+          }
+          return accumulator.toSchema();
+        });
+  }
+
+  /**
+   * Infer the JSON schema from all the remaining sample JSONs from a {@link JsonParser}, where
+   * every root level value is a sample. The tokens are summarized directly without building
+   * {@link JsonNode} trees for the samples. The parser is not closed.
+   *
+   * @param parser the parser to read the sample JSONs from
+   * @return the inferred JSON schema
+   * @throws IOException if the parser throws
+   * @throws IllegalArgumentException if there are no samples or if the samples contain
+   *         unsupported values
+   * @throws IllegalStateException if this inferrer uses {@link EnumExtractor}s
+   * @see SchemaAccumulator#addAll(JsonParser)
+   */
+  @Beta
+  @Nonnull
+  public ObjectNode inferFromParser(@Nonnull JsonParser parser) throws IOException {
+    final SchemaAccumulator accumulator = newSchemaAccumulator().addAll(parser);
+    if (accumulator.getSampleCount() == 0) {
+      throw new IllegalArgumentException("Unable to process empty samples");
+    }
+    return accumulator.toSchema();
+  }
+
+  /**
+   * Infer the JSON schema from all the sample JSONs from an {@link InputStream}, where every root
+   * level value is a sample, e.g. a stream of newline delimited JSONs. The stream is not closed.
+   *
+   * @param in the stream to read the sample JSONs from
+   * @return the inferred JSON schema
+   * @throws IOException if reading or parsing fails
+   * @throws IllegalArgumentException if there are no samples or if the samples contain
+   *         unsupported values
+   * @throws IllegalStateException if this inferrer uses {@link EnumExtractor}s
+   * @see #inferFromParser(JsonParser)
+   */
+  @Beta
+  @Nonnull
+  public ObjectNode inferFromStream(@Nonnull InputStream in) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+      return inferFromParser(parser);
+    }
+  }
+
+  /**
+   * Infer the JSON schema from multiple sample JSONs and write it to a {@link JsonGenerator} as a
+   * single value, without building the serialized schema in memory first. The schema is written
+   * with an explicit stack, so schemas of deep samples that would overflow the stack with
+   * {@link JsonNode#toString()} can be written as well. The output is the same as
+   * {@link #inferForSamples(Collection)} written by the generator. The generator is flushed but
+   * not closed.
+   *
+   * @param generator the generator to write the schema to
+   * @param samples the sample JSONs
+   * @throws IOException if the generator throws
+   */
+  @Beta
+  public void inferTo(@Nonnull JsonGenerator generator,
+      @Nonnull Collection<? extends JsonNode> samples) throws IOException {
+    Objects.requireNonNull(generator);
+    SchemaWriter.write(inferForSamples(samples), generator);
+    generator.flush();
+  }
+
+  /**
+   * Infer the JSON schema from multiple sample JSONs and write it to a {@link Writer}. The writer
+   * is flushed but not closed.
+   *
+   * @param writer the writer to write the schema to
+   * @param samples the sample JSONs
+   * @throws IOException if writing fails
+   * @see #inferTo(JsonGenerator, Collection)
+   */
+  @Beta
+  public void inferTo(@Nonnull Writer writer, @Nonnull Collection<? extends JsonNode> samples)
+      throws IOException {
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+      inferTo(generator, samples);
+    }
+  }
+
+  /**
+   * @return A new {@link SchemaAccumulator} for inferring the JSON schema from samples one at a
+   *         time without retaining them.
+   * @throws IllegalStateException if this inferrer uses {@link EnumExtractor}s, which require all
+   *         the samples to be available
+   */
+  @Beta
+  @Nonnull
+  public SchemaAccumulator newSchemaAccumulator() {
+    checkSchemaAccumulatorSupported();
+    return new SchemaAccumulator(this);
+  }
+
+  private void checkSchemaAccumulatorSupported() {
+    if (enumExtractor != EnumExtractors.noOp()) {
+      throw new IllegalStateException(
+          EnumExtractor.class.getSimpleName() + "s are not supported by "
+              + SchemaAccumulator.class.getSimpleName());
+    }
+  }
+
+  /**
+   * Infer the JSON schema from a {@link SchemaSummary}, which is usually the result of merging the
+   * summaries of multiple {@link SchemaAccumulator}s. Note that this inferrer should have the same
+   * configuration as the one used to build the summary.
+   *
+   * @param summary the summary of the sample JSONs
+   * @return the inferred JSON schema
+   * @see SchemaSummary
+   */
+  @Beta
+  @Nonnull
+  public ObjectNode inferForSummary(@Nonnull SchemaSummary summary) {
+    if (summary.getSampleCount() == 0) {
+      throw new IllegalArgumentException("Unable to process empty samples");
+    }
+    return inferForSummary(summary.getRootSummary());
+  }
+
+  /**
+   * Infer the JSON schema from the {@link PathSummary} of all the samples. This is the equivalent
+   * of {@link #inferForSamples(Collection)} for {@link SchemaAccumulator}.
+   */
+  @Nonnull
+  ObjectNode inferForSummary(@Nonnull PathSummary summary) {
+    if (summary.isEmpty()) {
+      throw new IllegalStateException("Unable to process empty samples");
+    }
+    final ObjectNode schema = newObject();
+    schema.put(Consts.Fields.DOLLAR_SCHEMA, specVersion.getMetaSchemaUrl());
+    final Set<ObjectNode> anyOfs = new Inference(null, 0).getAnyOfsFromSummary(summary);
+    assert !anyOfs.isEmpty() : "empty anyOfs encountered in inferForSummary";
+    setAnyOfs(schema, anyOfs, null, summary.getStats());
+    if (subschemaDefinitions != null) {
+      subschemaDefinitions.extract(schema);
     }
     return schema;
   }
@@ -118,7 +366,7 @@ public final class JsonSchemaInferrer {
    * Pre-process a {@link JsonNode} input.
    */
   @Nonnull
-  private JsonNode preProcessSample(@Nullable JsonNode sample) {
+  JsonNode preProcessSample(@Nullable JsonNode sample) {
     if (sample == null) {
       return JsonNodeFactory.instance.nullNode();
     } else if (sample.isPojo()) {
@@ -135,117 +383,76 @@ public final class JsonSchemaInferrer {
   }
 
   /**
-   * Handle object samples
-   */
-  @Nullable
-  private ObjectNode processObjects(@Nonnull Collection<ObjectNode> objectNodes) {
-    if (objectNodes.isEmpty()) {
-      return null;
-    }
-    // All the field names across all samples combined
-    final Set<String> allFieldNames = getAllFieldNames(objectNodes);
-    final ObjectNode properties = newObject();
-    for (String fieldName : allFieldNames) {
-      // Get the vals from samples that have the field name. vals cannot be empty.
-      final Collection<JsonNode> processedSamples = getAllValuesForFieldName(objectNodes, fieldName)
-          .map(this::preProcessSample).collect(Collectors.toList());
-      final ObjectNode newProperty = newObject();
-      handleDescriptionGeneration(newProperty, fieldName);
-      final Set<ObjectNode> anyOfs = getAnyOfsFromSamples(processedSamples);
-      // anyOfs cannot be empty here, since we should have at least one match of the fieldName
-      assert !anyOfs.isEmpty() : "empty anyOfs encountered";
-      switch (anyOfs.size()) {
-        case 1:
-          newProperty.setAll(anyOfs.iterator().next());
-          // No need to call processGenericSchemaFeature since this is an existing schema
-          break;
-        default: {
-          newProperty.set(Consts.Fields.ANY_OF, newArray(anyOfs));
-          // This is an anyOf schema. No type available.
-          processGenericSchemaFeature(newProperty, processedSamples, null);
-          break;
-        }
-      }
-      properties.set(fieldName, newProperty);
-    }
-    final ObjectNode schema = newObject().put(Consts.Fields.TYPE, Consts.Types.OBJECT);
-    if (properties.size() > 0) {
-      schema.set(Consts.Fields.PROPERTIES, properties);
-    }
-    processGenericSchemaFeature(schema, objectNodes, Consts.Types.OBJECT);
-    return schema;
-  }
-
-  /**
-   * Handle array samples
+   * Build the schema for a single field name of object samples
+   *
+   * @param anyOfs the anyOfs of the values of the field name, which cannot be empty
+   * @param fieldValues the processed values from samples that have the field name, or null if
+   *        only the stats are available
+   * @param stats the {@link SampleStats} of the values, or null if the values are available
    */
-  @Nullable
-  private ObjectNode processArrays(@Nonnull Collection<ArrayNode> arrayNodes) {
-    if (arrayNodes.isEmpty()) {
-      return null;
-    }
-    // Note that samples can be empty here if the sample arrays are empty
-    final Collection<JsonNode> processedSamples = arrayNodes.stream().flatMap(j -> stream(j))
-        .map(this::preProcessSample).collect(Collectors.toList());
-    final ObjectNode items;
-    final Set<ObjectNode> anyOfs = getAnyOfsFromSamples(processedSamples);
-    switch (anyOfs.size()) {
-      case 0:
-        // anyOfs can be empty here, since the original array can be empty
-        items = newObject();
-        break;
-      case 1:
-        items = anyOfs.iterator().next();
-        break;
-      default:
-        items = newObject();
-        items.set(Consts.Fields.ANY_OF, newArray(anyOfs));
-        break;
-    }
-    final ObjectNode schema = newObject().put(Consts.Fields.TYPE, Consts.Types.ARRAY);
-    if (items.size() > 0) {
-      schema.set(Consts.Fields.ITEMS, items);
-    }
-    processGenericSchemaFeature(schema, arrayNodes, Consts.Types.ARRAY);
-    return schema;
+  @Nonnull
+  private ObjectNode newProperty(@Nonnull String fieldName, @Nonnull Set<ObjectNode> anyOfs,
+      @Nullable Collection<? extends JsonNode> fieldValues, @Nullable SampleStats stats) {
+    final ObjectNode newProperty = newObject();
+    handleDescriptionGeneration(newProperty, fieldName);
+    // anyOfs cannot be empty here, since we should have at least one match of the fieldName
+    assert !anyOfs.isEmpty() : "empty anyOfs encountered";
+    setAnyOfs(newProperty, anyOfs, fieldValues, stats);
+    return newProperty;
   }
 
   /**
    * Handle primitive samples
    */
   @Nonnull
-  private Set<ObjectNode> processPrimitives(@Nonnull Collection<ValueNode> valueNodes) {
+  private Set<ObjectNode> processPrimitives(@Nonnull Collection<ValueNode> valueNodes,
+      @Nullable InferenceBudget.Tracker budgetTracker) {
     if (valueNodes.isEmpty()) {
       return Collections.emptySet();
     }
-    final Set<ObjectNode> anyOfs = new HashSet<>();
     // Whether all the numbers in the samples are integers. Used for inferring number types.
     final boolean allNumbersAreIntegers =
         valueNodes.stream().filter(JsonNode::isNumber).allMatch(this::isInteger);
-    /*
-     * Map to keep track of examples. The keys are pairs of [type, format] stored in Lists, and the
-     * vales are examples for that type/format combo.
-     */
-    final PrimitivesSummaryMap primitivesSummaryMap = new PrimitivesSummaryMap();
+    // Table to keep track of the samples for every [type, format] combination
+    final TypeFormatTable<PrimitivesSummary> primitivesSummaries = new TypeFormatTable<>();
+    final FormatInferrer pathFormatInferrer = newPathFormatInferrer();
+    int valueCount = 0;
     for (ValueNode valueNode : valueNodes) {
-      final ObjectNode newAnyOf = newObject();
-      final String type = inferPrimitiveType(valueNode, allNumbersAreIntegers);
-      newAnyOf.put(Consts.Fields.TYPE, type);
-      final String format = inferFormat(valueNode);
-      if (format != null) {
-        newAnyOf.put(Consts.Fields.FORMAT, format);
+      // Check the time and cancellation every now and then on paths with a lot of values
+      if (budgetTracker != null && (++valueCount & 0x3FF) == 0) {
+        budgetTracker.check();
       }
-      primitivesSummaryMap.addSample(type, format, valueNode);
-      anyOfs.add(newAnyOf);
+      final String type = inferPrimitiveType(valueNode, allNumbersAreIntegers);
+      final String format = inferFormat(pathFormatInferrer, valueNode);
+      primitivesSummaries.computeIfAbsent(type, format, PrimitivesSummary::new)
+          .addSample(valueNode);
     }
+    final Set<ObjectNode> anyOfs = newTypeFormatAnyOfs(primitivesSummaries);
     // Put the combined examples and default back into the result schema
     for (ObjectNode anyOf : anyOfs) {
       final String type = anyOf.path(Consts.Fields.TYPE).textValue();
       final String format = anyOf.path(Consts.Fields.FORMAT).textValue();
       @Nonnull
-      final PrimitivesSummary primitivesSummary =
-          primitivesSummaryMap.getPrimitivesSummary(type, format);
-      processGenericSchemaFeature(anyOf, primitivesSummary.getSamples(), type);
+      final PrimitivesSummary primitivesSummary = primitivesSummaries.get(type, format);
+      processGenericSchemaFeature(anyOf, primitivesSummary.getSamples(), null, type);
+    }
+    return anyOfs;
+  }
+
+  /**
+   * @return A new mutable {@link Set} with one {@code anyOf} for every combination of type and
+   *         format in the given {@link TypeFormatTable}, added in the order of the table
+   */
+  @Nonnull
+  private static Set<ObjectNode> newTypeFormatAnyOfs(@Nonnull TypeFormatTable<?> table) {
+    final Set<ObjectNode> anyOfs = new HashSet<>();
+    for (int i = 0; i < table.size(); i++) {
+      final ObjectNode anyOf = newObject().put(Consts.Fields.TYPE, table.getType(i));
+      final String format = table.getFormat(i);
+      if (format != null) {
+        anyOf.put(Consts.Fields.FORMAT, format);
+      }
+      anyOfs.add(anyOf);
     }
     return anyOfs;
   }
@@ -261,48 +468,80 @@ public final class JsonSchemaInferrer {
     enumExtractionResult.stream().distinct().forEach(enumArray::add);
     final ObjectNode schema = newObject();
     schema.set(Consts.Fields.ENUM, enumArray);
-    processGenericSchemaFeature(schema, enumExtractionResult, null);
+    processGenericSchemaFeature(schema, enumExtractionResult, null, null);
     return schema;
   }
 
   /**
-   * Build {@code anyOf} from sample JSONs. Note that all the arrays and objects will be combined.
-   *
-   * @param processedSamples The stream of samples that have gone through
-   *        {@link #preProcessSample(JsonNode)}
+   * Handle the primitive samples of a {@link PathSummary}
    */
   @Nonnull
-  private Set<ObjectNode> getAnyOfsFromSamples(
-      @Nonnull Collection<? extends JsonNode> processedSamples) {
-    final Collection<Collection<? extends JsonNode>> enumExtractionResults =
-        getEnumExtractionResults(processedSamples);
-    final Collection<ObjectNode> objectNodes = new ArrayList<>();
-    final Collection<ArrayNode> arrayNodes = new ArrayList<>();
-    final Collection<ValueNode> valueNodes = new ArrayList<>();
-    for (JsonNode sample : processedSamples) {
-      if (enumExtractionResults.stream()
-          .anyMatch(enumExtractionResult -> enumExtractionResult.contains(sample))) {
-        continue;
+  private Set<ObjectNode> processPrimitivesSummary(@Nonnull PathSummary summary) {
+    // Now that all the samples are seen, the actual number types can be decided
+    final TypeFormatTable<SampleStats> primitiveStats = summary.getPrimitiveStats();
+    final TypeFormatTable<SampleStats> statsByTypeAndFormat = new TypeFormatTable<>();
+    for (int i = 0; i < primitiveStats.size(); i++) {
+      final String type = primitiveStats.getType(i);
+      final String actualType = Consts.Types.NUMBER_TYPES.contains(type)
+          && !integerTypePreference.shouldUseInteger(() -> Consts.Types.INTEGER.equals(type),
+              summary.allNumbersAreIntegers()) ? Consts.Types.NUMBER : type;
+      statsByTypeAndFormat
+          .computeIfAbsent(actualType, primitiveStats.getFormat(i), SampleStats::new)
+          .merge(primitiveStats.getValue(i));
+    }
+    /*
+     * Build the anyOfs in the order the types and formats are first seen and then put in the
+     * features, so the result is exactly the same as processPrimitives.
+     */
+    final Set<ObjectNode> anyOfs = newTypeFormatAnyOfs(statsByTypeAndFormat);
+    for (ObjectNode anyOf : anyOfs) {
+      final String type = anyOf.path(Consts.Fields.TYPE).textValue();
+      final String format = anyOf.path(Consts.Fields.FORMAT).textValue();
+      processGenericSchemaFeature(anyOf, null, statsByTypeAndFormat.get(type, format), type);
+    }
+    return anyOfs;
+  }
+
+  /**
+   * Put the given anyOfs into the given schema. If there is only one anyOf, it is merged into the
+   * schema directly.
+   *
+   * @param samples The samples behind the anyOfs, or null if only the stats are available
+   * @param stats The {@link SampleStats} behind the anyOfs, or null if the samples are available
+   */
+  private void setAnyOfs(@Nonnull ObjectNode schema, @Nonnull Set<ObjectNode> anyOfs,
+      @Nullable Collection<? extends JsonNode> samples, @Nullable SampleStats stats) {
+    switch (anyOfs.size()) {
+      case 1:
+        schema.setAll(anyOfs.iterator().next());
+        // No need to call processGenericSchemaFeature since this is an existing schema
+        break;
+      default: {
+        schema.set(Consts.Fields.ANY_OF, newArray(anyOfs));
+        // This is an anyOf schema. No type available.
+        processGenericSchemaFeature(schema, samples, stats, null);
+        break;
       }
-      if (sample instanceof ObjectNode) {
-        objectNodes.add((ObjectNode) sample);
-      } else if (sample instanceof ArrayNode) {
-        arrayNodes.add((ArrayNode) sample);
-      } else {
-        valueNodes.add((ValueNode) sample);
+    }
+  }
+
+  /**
+   * Turn the anyOfs of array elements into {@code items}
+   */
+  @Nonnull
+  private static ObjectNode anyOfsToItems(@Nonnull Set<ObjectNode> anyOfs) {
+    switch (anyOfs.size()) {
+      case 0:
+        // anyOfs can be empty here, since the original array can be empty
+        return newObject();
+      case 1:
+        return anyOfs.iterator().next();
+      default: {
+        final ObjectNode items = newObject();
+        items.set(Consts.Fields.ANY_OF, newArray(anyOfs));
+        return items;
       }
     }
-    final Set<ObjectNode> anyOfs = new HashSet<>();
-    // Enums
-    enumExtractionResults.stream().map(this::enumExtractionResultToSchema).forEach(anyOfs::add);
-    // Objects
-    Optional.ofNullable(processObjects(objectNodes)).ifPresent(anyOfs::add);
-    // Arrays
-    Optional.ofNullable(processArrays(arrayNodes)).ifPresent(anyOfs::add);
-    // Primitives
-    anyOfs.addAll(processPrimitives(valueNodes));
-    postProcessAnyOfs(anyOfs);
-    return Collections.unmodifiableSet(anyOfs);
   }
 
   private void postProcessAnyOfs(@Nonnull Collection<ObjectNode> anyOfs) {
@@ -357,7 +596,7 @@ public final class JsonSchemaInferrer {
         type.getClass().getSimpleName(), type, sample));
   }
 
-  private boolean isInteger(@Nonnull JsonNode sample) {
+  boolean isInteger(@Nonnull JsonNode sample) {
     final IntegerTypeCriterionInput input = new IntegerTypeCriterionInput(sample, specVersion);
     return integerTypeCriterion.isInteger(input);
   }
@@ -370,6 +609,33 @@ public final class JsonSchemaInferrer {
     return Objects.requireNonNull(enumExtractionResults);
   }
 
+  /**
+   * @return A {@link Predicate} for whether a sample belongs to any of the enum extraction results.
+   *         Since the results are expected to come directly from the samples, the samples are first
+   *         looked up by identity. Only samples with the same {@link JsonNodeType} as any of the
+   *         results fall back to {@link JsonNode#equals(Object)}, which is needed for results with
+   *         duplicates removed.
+   */
+  @Nonnull
+  private static Predicate<JsonNode> getEnumMembership(
+      @Nonnull Collection<Collection<? extends JsonNode>> enumExtractionResults) {
+    if (enumExtractionResults.isEmpty()) {
+      return sample -> false;
+    }
+    final Set<JsonNode> enumNodesByIdentity = Collections.newSetFromMap(new IdentityHashMap<>());
+    final Set<JsonNodeType> enumNodeTypes = EnumSet.noneOf(JsonNodeType.class);
+    for (Collection<? extends JsonNode> enumExtractionResult : enumExtractionResults) {
+      for (JsonNode enumNode : enumExtractionResult) {
+        if (enumNodesByIdentity.add(enumNode)) {
+          enumNodeTypes.add(enumNode.getNodeType());
+        }
+      }
+    }
+    final Set<JsonNode> enumNodes = new HashSet<>(enumNodesByIdentity);
+    return sample -> enumNodesByIdentity.contains(sample)
+        || (enumNodeTypes.contains(sample.getNodeType()) && enumNodes.contains(sample));
+  }
+
   private void handleDescriptionGeneration(@Nonnull ObjectNode schema, @Nullable String fieldName) {
     final TitleDescriptionGeneratorInput input =
         new TitleDescriptionGeneratorInput(fieldName, specVersion);
@@ -387,20 +653,544 @@ public final class JsonSchemaInferrer {
     }
   }
 
+  /**
+   * @return The {@link FormatInferrer} to use for all the primitive samples at a single path
+   */
+  @Nonnull
+  FormatInferrer newPathFormatInferrer() {
+    return pathFormatInferrerSupplier.get();
+  }
+
   @Nullable
-  private String inferFormat(@Nonnull JsonNode sample) {
+  String inferFormat(@Nonnull FormatInferrer pathFormatInferrer, @Nonnull JsonNode sample) {
     final FormatInferrerInput input = new FormatInferrerInput(sample, specVersion);
-    return formatInferrer.inferFormat(input);
+    return pathFormatInferrer.inferFormat(input);
+  }
+
+  /**
+   * @return The {@link SampleRetention}s to keep primitive samples with when the samples are not
+   *         retained
+   */
+  @Nonnull
+  List<SampleRetention> getSampleRetentions() {
+    return genericSchemaFeaturePlan.getSampleRetentions();
   }
 
+  /**
+   * @param samples The samples behind the schema, or null if only the stats are available
+   * @param stats The {@link SampleStats} behind the schema, or null to compute them from the
+   *        samples when needed
+   */
   private void processGenericSchemaFeature(@Nonnull ObjectNode schema,
-      @Nonnull Collection<? extends JsonNode> samples, @Nullable String type) {
+      @Nullable Collection<? extends JsonNode> samples, @Nullable SampleStats stats,
+      @Nullable String type) {
+    if (!genericSchemaFeaturePlan.hasSteps(type)) {
+      return;
+    }
     final GenericSchemaFeatureInput input =
-        new GenericSchemaFeatureInput(schema, samples, type, specVersion);
-    final ObjectNode featureResult = genericSchemaFeature.getFeatureResult(input);
+        new GenericSchemaFeatureInput(schema, samples, stats, type, specVersion);
+    final ObjectNode featureResult = genericSchemaFeaturePlan.getFeatureResult(input);
     if (featureResult != null) {
       schema.setAll(featureResult);
     }
   }
 
+  /**
+   * @return Whether work of the given size should be split into fork-join tasks
+   */
+  private boolean shouldFork(long workSize) {
+    return forkJoinPool != null && workSize >= parallelismThreshold;
+  }
+
+  /**
+   * @return The number of values of the given range of field names
+   */
+  private static long getValueCount(@Nonnull List<Map.Entry<String, List<JsonNode>>> fields,
+      int from, int to) {
+    long valueCount = 0;
+    for (int i = from; i < to; i++) {
+      valueCount += fields.get(i).getValue().size();
+    }
+    return valueCount;
+  }
+
+  /**
+   * A single run of inference. Instead of recursing into the field values and array elements,
+   * every path is handled by {@link Frame}s on an explicit stack, so the depth of the samples is
+   * only limited by memory and the stack used does not depend on the depth of the samples. Forked
+   * tasks run their own nested {@link Inference}s, and forking stops after
+   * {@link #MAX_FORK_DEPTH} nested {@link Inference}s, so the stack used stays bounded with
+   * parallelism as well.
+   */
+  private final class Inference {
+
+    @Nullable
+    private final InferenceBudget.Tracker budgetTracker;
+    // The hash codes of the anyOfs of this inference, shared by all the AnyOfSets
+    private final Map<JsonNode, Integer> hashCodeCache = new IdentityHashMap<>();
+    // The number of Inferences this one is nested in
+    private final int forkDepth;
+
+    Inference(@Nullable InferenceBudget.Tracker budgetTracker, int forkDepth) {
+      this.budgetTracker = budgetTracker;
+      this.forkDepth = forkDepth;
+    }
+
+    /**
+     * Run the given frame and all the frames it needs until it is finished
+     *
+     * @return the given frame
+     */
+    @Nonnull
+    <F extends Frame> F run(@Nonnull F rootFrame) {
+      final Deque<Frame> stack = new ArrayDeque<>();
+      stack.push(rootFrame);
+      while (!stack.isEmpty()) {
+        final Frame frame = stack.peek();
+        if (frame.started) {
+          stack.pop();
+          frame.finish();
+        } else {
+          frame.started = true;
+          frame.start(stack);
+        }
+      }
+      return rootFrame;
+    }
+
+    /**
+     * Build {@code anyOf} from sample JSONs. Note that all the arrays and objects will be combined.
+     *
+     * @param processedSamples The samples that have gone through
+     *        {@link JsonSchemaInferrer#preProcessSample(JsonNode)}
+     */
+    @Nonnull
+    Set<ObjectNode> getAnyOfsFromSamples(
+        @Nonnull Collection<? extends JsonNode> processedSamples) {
+      return run(new SamplesFrame(this, processedSamples)).anyOfs;
+    }
+
+    /**
+     * Build {@code anyOf} from a {@link PathSummary}. This is the equivalent of
+     * {@link #getAnyOfsFromSamples(Collection)} for {@link SchemaAccumulator}.
+     */
+    @Nonnull
+    Set<ObjectNode> getAnyOfsFromSummary(@Nonnull PathSummary summary) {
+      return run(new SummaryFrame(this, null, summary)).anyOfs;
+    }
+
+    /**
+     * Handle object samples
+     */
+    @Nullable
+    ObjectNode processObjects(@Nonnull Collection<ObjectNode> objectNodes) {
+      return objectNodes.isEmpty() ? null : run(new ObjectsFrame(this, objectNodes)).schema;
+    }
+
+    /**
+     * Handle array samples
+     */
+    @Nullable
+    ObjectNode processArrays(@Nonnull Collection<ArrayNode> arrayNodes) {
+      return arrayNodes.isEmpty() ? null : run(new ArraysFrame(this, arrayNodes)).schema;
+    }
+
+    /**
+     * Handle the values of a single field name of object samples
+     *
+     * @param fieldValues the vals from samples that have the field name. vals cannot be empty.
+     */
+    @Nonnull
+    ObjectNode processProperty(@Nonnull String fieldName, @Nonnull List<JsonNode> fieldValues) {
+      fieldValues.replaceAll(JsonSchemaInferrer.this::preProcessSample);
+      return newProperty(fieldName, getAnyOfsFromSamples(fieldValues), fieldValues, null);
+    }
+
+    /**
+     * @return Whether work of the given size should be split into fork-join tasks
+     */
+    boolean shouldFork(long workSize) {
+      return forkDepth < MAX_FORK_DEPTH && JsonSchemaInferrer.this.shouldFork(workSize);
+    }
+
+    /**
+     * @return A new {@link Inference} for a forked task
+     */
+    @Nonnull
+    Inference fork() {
+      return new Inference(budgetTracker, forkDepth + 1);
+    }
+
+    @Nonnull
+    Set<ObjectNode> newAnyOfSet() {
+      return new AnyOfSet(hashCodeCache);
+    }
+
+  }
+
+  /**
+   * A unit of work of an {@link Inference}, which is started, then finished after all the frames
+   * it pushed onto the stack are finished
+   */
+  private abstract static class Frame {
+
+    boolean started;
+
+    /**
+     * Start the work, pushing the frames whose results are needed onto the stack. The frames are
+     * run in the reverse order of being pushed.
+     */
+    abstract void start(@Nonnull Deque<Frame> stack);
+
+    /**
+     * Finish the work with the results of the frames pushed in {@link #start(Deque)}
+     */
+    abstract void finish();
+
+  }
+
+  /**
+   * Frame for building the {@code anyOf}s of the samples at a single path
+   */
+  private final class SamplesFrame extends Frame {
+
+    private final Inference inference;
+    private final Collection<? extends JsonNode> processedSamples;
+    private final List<ObjectNode> enumAnyOfs = new ArrayList<>();
+    private Collection<ValueNode> valueNodes;
+    @Nullable
+    private ObjectsFrame objectsFrame;
+    @Nullable
+    private ArraysFrame arraysFrame;
+    // Only set in start when the objects and arrays are handled in forked tasks
+    private ObjectNode objectsAnyOf;
+    private ObjectNode arraysAnyOf;
+    private Set<ObjectNode> primitivesAnyOfs;
+    // The result
+    Set<ObjectNode> anyOfs;
+
+    SamplesFrame(@Nonnull Inference inference,
+        @Nonnull Collection<? extends JsonNode> processedSamples) {
+      this.inference = inference;
+      this.processedSamples = processedSamples;
+    }
+
+    @Override
+    void start(Deque<Frame> stack) {
+      final InferenceBudget.Tracker budgetTracker = inference.budgetTracker;
+      if (budgetTracker != null) {
+        budgetTracker.visit(processedSamples.size());
+      }
+      final Collection<Collection<? extends JsonNode>> enumExtractionResults =
+          getEnumExtractionResults(processedSamples);
+      final Predicate<JsonNode> enumMembership = getEnumMembership(enumExtractionResults);
+      /*
+       * Count the samples of every kind and use views over the samples instead of copying them.
+       * The views are never stacked on top of the lazy views of the root samples and the array
+       * elements though, since they would get deeper with every level of nested arrays, so the
+       * references are collected into flat lists instead in that case. The arrays always are, since
+       * they are the base of the elements of the next level.
+       */
+      final boolean isLazyView = !(processedSamples instanceof List);
+      final List<ObjectNode> objectList = isLazyView ? new ArrayList<>() : null;
+      final List<ArrayNode> arrayNodes = new ArrayList<>();
+      final List<ValueNode> valueList = isLazyView ? new ArrayList<>() : null;
+      int objectCount = 0;
+      int valueCount = 0;
+      int sampleCount = 0;
+      for (JsonNode sample : processedSamples) {
+        if (budgetTracker != null && (++sampleCount & 0x3FF) == 0) {
+          budgetTracker.check();
+        }
+        if (enumMembership.test(sample)) {
+          continue;
+        }
+        if (sample instanceof ObjectNode) {
+          objectCount++;
+          if (objectList != null) {
+            objectList.add((ObjectNode) sample);
+          }
+        } else if (sample instanceof ArrayNode) {
+          arrayNodes.add((ArrayNode) sample);
+        } else {
+          valueCount++;
+          if (valueList != null) {
+            valueList.add((ValueNode) sample);
+          }
+        }
+      }
+      final Collection<ObjectNode> objectNodes = objectList != null ? objectList
+          : filteredView(processedSamples, ObjectNode.class, enumMembership, objectCount);
+      valueNodes = valueList != null ? valueList
+          : filteredView(processedSamples, ValueNode.class, enumMembership, valueCount);
+      // Enums
+      for (Collection<? extends JsonNode> enumExtractionResult : enumExtractionResults) {
+        enumAnyOfs.add(enumExtractionResultToSchema(enumExtractionResult));
+      }
+      if (inference.shouldFork(processedSamples.size()) && (objectNodes.isEmpty() ? 0 : 1)
+          + (arrayNodes.isEmpty() ? 0 : 1) + (valueNodes.isEmpty() ? 0 : 1) > 1) {
+        // Objects and arrays in other threads, primitives in this thread
+        final ForkJoinTask<ObjectNode> objectsTask =
+            ForkJoinTask.adapt(() -> inference.fork().processObjects(objectNodes)).fork();
+        final ForkJoinTask<ObjectNode> arraysTask =
+            ForkJoinTask.adapt(() -> inference.fork().processArrays(arrayNodes)).fork();
+        primitivesAnyOfs = processPrimitives(valueNodes, budgetTracker);
+        arraysAnyOf = arraysTask.join();
+        objectsAnyOf = objectsTask.join();
+        return;
+      }
+      // Pushed in reverse, so the objects are handled first
+      if (!arrayNodes.isEmpty()) {
+        arraysFrame = new ArraysFrame(inference, arrayNodes);
+        stack.push(arraysFrame);
+      }
+      if (!objectNodes.isEmpty()) {
+        objectsFrame = new ObjectsFrame(inference, objectNodes);
+        stack.push(objectsFrame);
+      }
+    }
+
+    @Override
+    void finish() {
+      if (objectsFrame != null) {
+        objectsAnyOf = objectsFrame.schema;
+      }
+      if (arraysFrame != null) {
+        arraysAnyOf = arraysFrame.schema;
+      }
+      if (primitivesAnyOfs == null) {
+        primitivesAnyOfs = processPrimitives(valueNodes, inference.budgetTracker);
+      }
+      final Set<ObjectNode> anyOfs = inference.newAnyOfSet();
+      anyOfs.addAll(enumAnyOfs);
+      // Objects
+      Optional.ofNullable(objectsAnyOf).ifPresent(anyOfs::add);
+      // Arrays
+      Optional.ofNullable(arraysAnyOf).ifPresent(anyOfs::add);
+      // Primitives
+      anyOfs.addAll(primitivesAnyOfs);
+      postProcessAnyOfs(anyOfs);
+      this.anyOfs = Collections.unmodifiableSet(anyOfs);
+    }
+
+  }
+
+  /**
+   * Frame for building the schema of the object samples at a single path
+   */
+  private final class ObjectsFrame extends Frame {
+
+    private final Inference inference;
+    private final Collection<ObjectNode> objectNodes;
+    private final SampleStats objectStats = new SampleStats();
+    private List<Map.Entry<String, List<JsonNode>>> fields;
+    private ObjectNode[] newProperties;
+    // Null if the properties are handled in forked tasks
+    @Nullable
+    private SamplesFrame[] fieldFrames;
+    // The result
+    ObjectNode schema;
+
+    ObjectsFrame(@Nonnull Inference inference, @Nonnull Collection<ObjectNode> objectNodes) {
+      this.inference = inference;
+      this.objectNodes = objectNodes;
+    }
+
+    @Override
+    void start(Deque<Frame> stack) {
+      /*
+       * All the field values across all samples combined, grouped by field name in one pass, along
+       * with the stats of the objects themselves
+       */
+      fields = new ArrayList<>(
+          groupValuesByFieldName(objectNodes, objectStats, inference.budgetTracker).entrySet());
+      newProperties = new ObjectNode[fields.size()];
+      if (fields.size() > 1 && inference.shouldFork(getValueCount(fields, 0, fields.size()))) {
+        new PropertiesTask(inference, fields, newProperties, 0, fields.size()).compute();
+        return;
+      }
+      fieldFrames = new SamplesFrame[fields.size()];
+      for (int i = fields.size() - 1; i >= 0; i--) {
+        final List<JsonNode> fieldValues = fields.get(i).getValue();
+        fieldValues.replaceAll(JsonSchemaInferrer.this::preProcessSample);
+        fieldFrames[i] = new SamplesFrame(inference, fieldValues);
+        stack.push(fieldFrames[i]);
+      }
+    }
+
+    @Override
+    void finish() {
+      final ObjectNode properties = newObject();
+      for (int i = 0; i < newProperties.length; i++) {
+        final String fieldName = fields.get(i).getKey();
+        if (fieldFrames != null) {
+          newProperties[i] = newProperty(fieldName, fieldFrames[i].anyOfs,
+              fieldFrames[i].processedSamples, null);
+        }
+        properties.set(fieldName, newProperties[i]);
+      }
+      final ObjectNode schema = newObject().put(Consts.Fields.TYPE, Consts.Types.OBJECT);
+      if (properties.size() > 0) {
+        schema.set(Consts.Fields.PROPERTIES, properties);
+      }
+      processGenericSchemaFeature(schema, objectNodes, objectStats, Consts.Types.OBJECT);
+      this.schema = schema;
+    }
+
+  }
+
+  /**
+   * Frame for building the schema of the array samples at a single path
+   */
+  private final class ArraysFrame extends Frame {
+
+    private final Inference inference;
+    private final Collection<ArrayNode> arrayNodes;
+    private SamplesFrame itemsFrame;
+    // The result
+    ObjectNode schema;
+
+    ArraysFrame(@Nonnull Inference inference, @Nonnull Collection<ArrayNode> arrayNodes) {
+      this.inference = inference;
+      this.arrayNodes = arrayNodes;
+    }
+
+    @Override
+    void start(Deque<Frame> stack) {
+      // Note that samples can be empty here if the sample arrays are empty
+      itemsFrame = new SamplesFrame(inference,
+          mappedView(elementsView(arrayNodes), JsonSchemaInferrer.this::preProcessSample));
+      stack.push(itemsFrame);
+    }
+
+    @Override
+    void finish() {
+      final ObjectNode items = anyOfsToItems(itemsFrame.anyOfs);
+      final ObjectNode schema = newObject().put(Consts.Fields.TYPE, Consts.Types.ARRAY);
+      if (items.size() > 0) {
+        schema.set(Consts.Fields.ITEMS, items);
+      }
+      processGenericSchemaFeature(schema, arrayNodes, null, Consts.Types.ARRAY);
+      this.schema = schema;
+    }
+
+  }
+
+  /**
+   * Frame for building the {@code anyOf}s of a {@link PathSummary}, which is the equivalent of
+   * {@link SamplesFrame}, {@link ObjectsFrame} and {@link ArraysFrame} combined for
+   * {@link SchemaAccumulator}
+   */
+  private final class SummaryFrame extends Frame {
+
+    private final Inference inference;
+    // The field name of the summary, or null if it is not for a field
+    @Nullable
+    private final String fieldName;
+    private final PathSummary summary;
+    private final List<SummaryFrame> fieldFrames = new ArrayList<>();
+    @Nullable
+    private SummaryFrame itemsFrame;
+    // The result
+    Set<ObjectNode> anyOfs;
+
+    SummaryFrame(@Nonnull Inference inference, @Nullable String fieldName,
+        @Nonnull PathSummary summary) {
+      this.inference = inference;
+      this.fieldName = fieldName;
+      this.summary = summary;
+    }
+
+    @Override
+    void start(Deque<Frame> stack) {
+      // Pushed in reverse, so the objects are handled first
+      if (summary.getArrayStats() != null) {
+        itemsFrame = new SummaryFrame(inference, null, summary.getItemsSummary());
+        stack.push(itemsFrame);
+      }
+      summary.getFieldSummaries().forEach((fieldName, fieldSummary) -> fieldFrames
+          .add(new SummaryFrame(inference, fieldName, fieldSummary)));
+      for (int i = fieldFrames.size() - 1; i >= 0; i--) {
+        stack.push(fieldFrames.get(i));
+      }
+    }
+
+    @Override
+    void finish() {
+      final Set<ObjectNode> anyOfs = inference.newAnyOfSet();
+      // Objects
+      final SampleStats objectStats = summary.getObjectStats();
+      if (objectStats != null) {
+        final ObjectNode properties = newObject();
+        for (SummaryFrame fieldFrame : fieldFrames) {
+          properties.set(fieldFrame.fieldName, newProperty(fieldFrame.fieldName,
+              fieldFrame.anyOfs, null, fieldFrame.summary.getStats()));
+        }
+        final ObjectNode schema = newObject().put(Consts.Fields.TYPE, Consts.Types.OBJECT);
+        if (properties.size() > 0) {
+          schema.set(Consts.Fields.PROPERTIES, properties);
+        }
+        processGenericSchemaFeature(schema, null, objectStats, Consts.Types.OBJECT);
+        anyOfs.add(schema);
+      }
+      // Arrays
+      if (itemsFrame != null) {
+        final ObjectNode items = anyOfsToItems(itemsFrame.anyOfs);
+        final ObjectNode schema = newObject().put(Consts.Fields.TYPE, Consts.Types.ARRAY);
+        if (items.size() > 0) {
+          schema.set(Consts.Fields.ITEMS, items);
+        }
+        processGenericSchemaFeature(schema, null, summary.getArrayStats(), Consts.Types.ARRAY);
+        anyOfs.add(schema);
+      }
+      // Primitives
+      anyOfs.addAll(processPrimitivesSummary(summary));
+      postProcessAnyOfs(anyOfs);
+      this.anyOfs = Collections.unmodifiableSet(anyOfs);
+    }
+
+  }
+
+  /**
+   * Task for handling the values of a range of field names, splitting the range in half when there
+   * are enough values to be worth running in parallel. Every property schema is written to its own
+   * index of the result array, so the output does not depend on the order in which the tasks
+   * finish.
+   */
+  @SuppressWarnings("serial") // Never serialized
+  private final class PropertiesTask extends RecursiveAction {
+
+    private final Inference inference;
+    private final List<Map.Entry<String, List<JsonNode>>> fields;
+    private final ObjectNode[] newProperties;
+    private final int from;
+    private final int to;
+
+    PropertiesTask(@Nonnull Inference inference,
+        @Nonnull List<Map.Entry<String, List<JsonNode>>> fields,
+        @Nonnull ObjectNode[] newProperties, int from, int to) {
+      this.inference = inference;
+      this.fields = fields;
+      this.newProperties = newProperties;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1 && inference.shouldFork(getValueCount(fields, from, to))) {
+        final int mid = (from + to) >>> 1;
+        invokeAll(new PropertiesTask(inference, fields, newProperties, from, mid),
+            new PropertiesTask(inference, fields, newProperties, mid, to));
+        return;
+      }
+      final Inference leafInference = inference.fork();
+      for (int i = from; i < to; i++) {
+        final Map.Entry<String, List<JsonNode>> field = fields.get(i);
+        newProperties[i] = leafInference.processProperty(field.getKey(), field.getValue());
+      }
+    }
+
+  }
+
 }
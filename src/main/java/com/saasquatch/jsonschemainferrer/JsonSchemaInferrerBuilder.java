@@ -6,6 +6,9 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.NotThreadSafe;
 import com.saasquatch.jsonschemainferrer.annotations.Beta;
@@ -25,6 +28,11 @@ public final class JsonSchemaInferrerBuilder {
   private List<EnumExtractor> enumExtractors = Collections.emptyList();
   private TitleDescriptionGenerator titleDescriptionGenerator = TitleDescriptionGenerators.noOp();
   private List<FormatInferrer> formatInferrers = Collections.emptyList();
+  // 0 for no adaptive format inference
+  private int formatWarmUpSamples;
+  // 0 for no limit
+  private int maxInspectedValues;
+  private long valueSamplingSeed;
   private AdditionalPropertiesPolicy additionalPropertiesPolicy =
       AdditionalPropertiesPolicies.noOp();
   private RequiredPolicy requiredPolicy = RequiredPolicies.noOp();
@@ -36,6 +44,13 @@ public final class JsonSchemaInferrerBuilder {
   private Set<StringLengthFeature> stringLengthFeatures = Collections.emptySet();
   private Set<NumberRangeFeature> numberRangeFeatures = Collections.emptySet();
   private List<GenericSchemaFeature> genericSchemaFeatures = Collections.emptyList();
+  private DocumentSampling documentSampling = DocumentSampling.none();
+  private InferenceBudget inferenceBudget = InferenceBudget.unlimited();
+  // 0 for no definitions
+  private int minSubschemaOccurrences;
+  // Null for no parallelism
+  private ForkJoinPool forkJoinPool;
+  private int parallelismThreshold;
 
   JsonSchemaInferrerBuilder() {}
 
@@ -124,6 +139,63 @@ public final class JsonSchemaInferrerBuilder {
     return this;
   }
 
+  /**
+   * Enable adaptive format inference. The {@link FormatInferrer}s added with
+   * {@link #addFormatInferrers(FormatInferrer...)} are tried as usual for the first
+   * {@code warmUpSamples} primitive samples at every path. After that, at that path,
+   * {@link FormatInferrer}s that did not produce any format are skipped, and if a single
+   * {@link FormatInferrer} produced the format for all the warm-up samples, only that
+   * {@link FormatInferrer} is tried, falling back to all the {@link FormatInferrer}s when it does
+   * not produce a format. Note that this means formats that do not show up during the warm-up at a
+   * path can be missed. By default adaptive format inference is not enabled.
+   *
+   * @param warmUpSamples the number of primitive samples at a path before skipping
+   *        {@link FormatInferrer}s
+   */
+  @Beta
+  public JsonSchemaInferrerBuilder setAdaptiveFormatInference(@Nonnegative int warmUpSamples) {
+    if (warmUpSamples < 1) {
+      throw new IllegalArgumentException("Invalid warmUpSamples");
+    }
+    this.formatWarmUpSamples = warmUpSamples;
+    return this;
+  }
+
+  /**
+   * Limit the number of values at every path that go through the expensive per-value work, so the
+   * cost is bounded on paths with a huge number of values, e.g. log messages. The types and the
+   * structure still come from all the values.
+   * <ul>
+   * <li>The {@link FormatInferrer}s only fully inspect the first {@code maxValues} primitive
+   * values of every JSON type at every path, so a path with at most {@code maxValues} values of a
+   * type gets exactly the same formats as without a limit. If the inspected values all agreed on a
+   * format, the values after that are only checked against that format, and fall back to full
+   * inspection if the check fails. Otherwise the values after that get no format. A value therefore
+   * never gets a format it was not checked against, but formats that only show up after the first
+   * values of a path with mixed formats are missed. Inspecting the first values instead of random
+   * ones is what allows the check, since a {@link SchemaAccumulator} only sees every value
+   * once.</li>
+   * <li>The {@link EnumExtractor}s only get a uniformly random sample of {@code maxValues} values at
+   * every path, picked with reservoir sampling seeded with the given seed. Values equal to the
+   * extracted enum values still end up in the enums.</li>
+   * </ul>
+   * Note that the built-in {@link ExamplesPolicies} already only keep a bounded number of values.
+   * By default there is no limit.
+   *
+   * @param maxValues the max number of values at every path to inspect
+   * @param seed the seed for the random number generator
+   */
+  @Beta
+  public JsonSchemaInferrerBuilder setValueInspectionLimit(@Nonnegative int maxValues,
+      long seed) {
+    if (maxValues < 1) {
+      throw new IllegalArgumentException("Invalid maxValues");
+    }
+    this.maxInspectedValues = maxValues;
+    this.valueSamplingSeed = seed;
+    return this;
+  }
+
   /**
    * Set the {@link AdditionalPropertiesPolicy}. By default it is
    * {@link AdditionalPropertiesPolicies#noOp()}.
@@ -231,9 +303,96 @@ public final class JsonSchemaInferrerBuilder {
     return this;
   }
 
+  /**
+   * Enable parallel inference with the given {@link ForkJoinPool}. When enabled,
+   * {@link JsonSchemaInferrer#inferForSamples(java.util.Collection)} splits the work for the
+   * properties of object samples and for the object, array and primitive samples at the same path
+   * into fork-join tasks, as long as there are at least {@code threshold} samples involved. The
+   * output is identical to the output without parallelism. By default parallelism is not enabled.
+   * <p>
+   * Note that all the custom implementations of the various interfaces used by the inferrer have
+   * to be thread safe when parallelism is enabled.
+   *
+   * @param forkJoinPool the pool to run the tasks in, e.g. {@link ForkJoinPool#commonPool()}
+   * @param threshold the min number of samples for the work to be split into tasks
+   */
+  @Beta
+  public JsonSchemaInferrerBuilder setParallelism(@Nonnull ForkJoinPool forkJoinPool,
+      @Nonnegative int threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("Invalid threshold");
+    }
+    this.forkJoinPool = Objects.requireNonNull(forkJoinPool);
+    this.parallelismThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Set the {@link DocumentSampling} for
+   * {@link JsonSchemaInferrer#inferForSamples(java.util.Collection)}, so only a random subset of
+   * the sample JSONs is used. The inferred schema gets a {@code $comment}, or a
+   * {@code description} before draft-07, saying how many of the sample JSONs (of which top-level
+   * types, if stratified) were used. Other ways of inferring, e.g. with a
+   * {@link SchemaAccumulator}, are not affected. By default it is {@link DocumentSampling#none()}.
+   */
+  @Beta
+  public JsonSchemaInferrerBuilder setDocumentSampling(
+      @Nonnull DocumentSampling documentSampling) {
+    this.documentSampling = Objects.requireNonNull(documentSampling);
+    return this;
+  }
+
+  /**
+   * Set the default {@link InferenceBudget} for every call of
+   * {@link JsonSchemaInferrer#inferForSamples(java.util.Collection)}, which can be overridden per
+   * call with {@link JsonSchemaInferrer#inferForSamples(java.util.Collection, InferenceBudget)}.
+   * By default it is {@link InferenceBudget#unlimited()}.
+   */
+  @Beta
+  public JsonSchemaInferrerBuilder setInferenceBudget(@Nonnull InferenceBudget inferenceBudget) {
+    this.inferenceBudget = Objects.requireNonNull(inferenceBudget);
+    return this;
+  }
+
+  /**
+   * Extract the object schemas with {@code properties} that show up at least
+   * {@code minOccurrences} times in the inferred schema, e.g. the same address shape at many
+   * paths, into {@code definitions} at the root of the schema, and replace every copy with a
+   * {@code $ref} to the definition. The definitions are named after the field names where they
+   * are first seen. Repeated subschemas that only show up within other repeated subschemas are
+   * left in place. Note that since the siblings of {@code $ref} are ignored in draft-04 through
+   * draft-07, the whole subschema is replaced, and the {@code title} and {@code description}
+   * generated with the {@link TitleDescriptionGenerator} are part of what has to be the same. By
+   * default no definitions are extracted.
+   *
+   * @param minOccurrences the min number of times a subschema has to show up to be extracted,
+   *        which is at least 2
+   */
+  @Beta
+  public JsonSchemaInferrerBuilder setSubschemaDefinitions(@Nonnegative int minOccurrences) {
+    if (minOccurrences < 2) {
+      throw new IllegalArgumentException("Invalid minOccurrences");
+    }
+    this.minSubschemaOccurrences = minOccurrences;
+    return this;
+  }
+
   @Nonnull
   private EnumExtractor getCombinedEnumExtractor() {
-    return EnumExtractors.chained(enumExtractors.toArray(new EnumExtractor[0]));
+    final EnumExtractor combinedEnumExtractor =
+        EnumExtractors.chained(enumExtractors.toArray(new EnumExtractor[0]));
+    if (maxInspectedValues == 0 || combinedEnumExtractor == EnumExtractors.noOp()) {
+      return combinedEnumExtractor;
+    }
+    final SampleRetention retention =
+        SampleRetention.random(maxInspectedValues, valueSamplingSeed);
+    return input -> {
+      if (input.getSamples().size() <= maxInspectedValues) {
+        return combinedEnumExtractor.extractEnums(input);
+      }
+      return combinedEnumExtractor.extractEnums(new EnumExtractorInput(
+          retention.select(input.getSamples()), input.getSpecVersion()));
+    };
   }
 
   @Nonnull
@@ -241,8 +400,34 @@ public final class JsonSchemaInferrerBuilder {
     return FormatInferrers.chained(formatInferrers.toArray(new FormatInferrer[0]));
   }
 
+  /**
+   * @return The {@link Supplier} of the {@link FormatInferrer} for every path
+   */
+  @Nonnull
+  private Supplier<FormatInferrer> getPathFormatInferrerSupplier() {
+    final FormatInferrer[] formatInferrersArray = formatInferrers.toArray(new FormatInferrer[0]);
+    final Supplier<FormatInferrer> supplier;
+    if (formatWarmUpSamples == 0 || formatInferrers.isEmpty()) {
+      final FormatInferrer combinedFormatInferrer = getCombinedFormatInferrer();
+      supplier = () -> combinedFormatInferrer;
+    } else {
+      final int warmUpSamples = formatWarmUpSamples;
+      supplier = () -> new AdaptiveFormatInferrer(formatInferrersArray, warmUpSamples);
+    }
+    if (maxInspectedValues == 0 || formatInferrers.isEmpty()) {
+      return supplier;
+    }
+    final int maxInspectedSamples = maxInspectedValues;
+    return () -> new CappedFormatInferrer(supplier.get(), formatInferrersArray,
+        maxInspectedSamples);
+  }
+
+  /**
+   * @return The {@link GenericSchemaFeaturePlan} for all the enabled features, compiled once here
+   *         so the inferrer does not have to figure out which features apply at every schema
+   */
   @Nonnull
-  private GenericSchemaFeature getCombinedGenericSchemaFeature() {
+  private GenericSchemaFeaturePlan getGenericSchemaFeaturePlan() {
     final List<GenericSchemaFeature> features = new ArrayList<>();
     if (additionalPropertiesPolicy != AdditionalPropertiesPolicies.noOp()) {
       features.add(additionalPropertiesPolicy);
@@ -264,7 +449,7 @@ public final class JsonSchemaInferrerBuilder {
     features.addAll(stringLengthFeatures);
     features.addAll(numberRangeFeatures);
     features.addAll(genericSchemaFeatures);
-    return GenericSchemaFeatures.chained(features.toArray(new GenericSchemaFeature[0]));
+    return new GenericSchemaFeaturePlan(features);
   }
 
   /**
@@ -273,8 +458,10 @@ public final class JsonSchemaInferrerBuilder {
    */
   public JsonSchemaInferrer build() {
     return new JsonSchemaInferrer(specVersion, integerTypePreference, integerTypeCriterion,
-        getCombinedEnumExtractor(), titleDescriptionGenerator, getCombinedFormatInferrer(),
-        getCombinedGenericSchemaFeature());
+        getCombinedEnumExtractor(), titleDescriptionGenerator, getPathFormatInferrerSupplier(),
+        getGenericSchemaFeaturePlan(), documentSampling, inferenceBudget,
+        minSubschemaOccurrences == 0 ? null : new SubschemaDefinitions(minSubschemaOccurrences),
+        forkJoinPool, parallelismThreshold);
   }
 
 }
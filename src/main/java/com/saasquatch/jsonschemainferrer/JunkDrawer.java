@@ -2,17 +2,24 @@ package com.saasquatch.jsonschemainferrer;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.AbstractCollection;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -37,6 +44,13 @@ import com.fasterxml.jackson.databind.node.ValueNode;
  */
 final class JunkDrawer {
 
+  /**
+   * The decimal value of a floating point node is based on {@link Double#toString(double)}, which
+   * is only guaranteed to be on the same side of every integer as the double itself for doubles
+   * that are less than this in magnitude.
+   */
+  private static final double MAX_EXACT_DOUBLE_INTEGER = 0x1p52;
+
   private JunkDrawer() {}
 
   /**
@@ -123,6 +137,144 @@ final class JunkDrawer {
     return newArray().addAll(elements);
   }
 
+  /**
+   * @return A read-only view of the given {@link Collection} with the given function applied to
+   *         every element as it is iterated, so no copy of the elements is made. The function is
+   *         applied again on every iteration, so it should be cheap and return the same instance
+   *         for the same element.
+   */
+  @Nonnull
+  static <T, R> Collection<R> mappedView(@Nonnull Collection<? extends T> collection,
+      @Nonnull Function<? super T, ? extends R> mapper) {
+    return new AbstractCollection<R>() {
+      @Override
+      public Iterator<R> iterator() {
+        final Iterator<? extends T> iterator = collection.iterator();
+        return new Iterator<R>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public R next() {
+            return mapper.apply(iterator.next());
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return collection.size();
+      }
+    };
+  }
+
+  /**
+   * @return A read-only view of the elements of all the given arrays, in order, so no copy of the
+   *         elements is made
+   */
+  @Nonnull
+  static Collection<JsonNode> elementsView(@Nonnull Collection<? extends JsonNode> arrayNodes) {
+    long size = 0;
+    for (JsonNode arrayNode : arrayNodes) {
+      size += arrayNode.size();
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many array elements");
+    }
+    final int elementCount = (int) size;
+    return new AbstractCollection<JsonNode>() {
+      @Override
+      public Iterator<JsonNode> iterator() {
+        final Iterator<? extends JsonNode> arrayIterator = arrayNodes.iterator();
+        return new Iterator<JsonNode>() {
+          private Iterator<JsonNode> elementIterator = Collections.emptyIterator();
+
+          @Override
+          public boolean hasNext() {
+            while (!elementIterator.hasNext()) {
+              if (!arrayIterator.hasNext()) {
+                return false;
+              }
+              elementIterator = arrayIterator.next().elements();
+            }
+            return true;
+          }
+
+          @Override
+          public JsonNode next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return elementIterator.next();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return elementCount;
+      }
+    };
+  }
+
+  /**
+   * @param size The number of elements that are instances of the given class and are not
+   *        excluded, which has to be counted beforehand
+   * @return A read-only view of the elements of the given {@link Collection} that are instances of
+   *         the given class and are not excluded by the given {@link Predicate}, so no copy of the
+   *         elements is made
+   */
+  @SuppressWarnings("unchecked")
+  @Nonnull
+  static <T extends JsonNode> Collection<T> filteredView(
+      @Nonnull Collection<? extends JsonNode> collection, @Nonnull Class<T> elementClass,
+      @Nonnull Predicate<? super JsonNode> excluded, int size) {
+    if (size == 0) {
+      return Collections.emptyList();
+    }
+    if (size == collection.size()) {
+      // Every element is included
+      return Collections.unmodifiableCollection((Collection<T>) collection);
+    }
+    return new AbstractCollection<T>() {
+      @Override
+      public Iterator<T> iterator() {
+        final Iterator<? extends JsonNode> iterator = collection.iterator();
+        return new Iterator<T>() {
+          private T nextElement;
+
+          @Override
+          public boolean hasNext() {
+            while (nextElement == null && iterator.hasNext()) {
+              final JsonNode element = iterator.next();
+              if (elementClass.isInstance(element) && !excluded.test(element)) {
+                nextElement = elementClass.cast(element);
+              }
+            }
+            return nextElement != null;
+          }
+
+          @Override
+          public T next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            final T element = nextElement;
+            nextElement = null;
+            return element;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
   /**
    * Create a {@link NumericNode} with the given {@link BigInteger} while attempting to fit the
    * input into an int or a long.
@@ -156,23 +308,67 @@ final class JunkDrawer {
   }
 
   /**
-   * Get all the unique field names across multiple {@link ObjectNode}s
+   * Group the field values across multiple {@link ObjectNode}s by field name, walking every
+   * {@link ObjectNode} only once. The field names are in the order they are first encountered, and
+   * the values for every field name are in the order of the {@link ObjectNode}s they come from.
+   *
+   * @return A mutable {@link Map} of field names to the non empty mutable {@link List}s of values
    */
-  static Set<String> getAllFieldNames(@Nonnull Iterable<? extends JsonNode> objectNodes) {
-    return stream(objectNodes)
-        .flatMap(j -> stream(j.fieldNames()))
-        .filter(Objects::nonNull)
-        .collect(Collectors.toSet());
+  @Nonnull
+  static Map<String, List<JsonNode>> groupValuesByFieldName(
+      @Nonnull Iterable<? extends JsonNode> objectNodes) {
+    return groupValuesByFieldName(objectNodes, null, null);
+  }
+
+  /**
+   * Same as {@link #groupValuesByFieldName(Iterable)}, but also keeps track of the sizes of the
+   * {@link ObjectNode}s and the number of {@link ObjectNode}s with every field name in the given
+   * {@link SampleStats} during the same pass, and checks the given
+   * {@link InferenceBudget.Tracker} every now and then.
+   */
+  @Nonnull
+  static Map<String, List<JsonNode>> groupValuesByFieldName(
+      @Nonnull Iterable<? extends JsonNode> objectNodes, @Nullable SampleStats objectStats,
+      @Nullable InferenceBudget.Tracker budgetTracker) {
+    final Map<String, List<JsonNode>> valuesByFieldName = new LinkedHashMap<>();
+    int objectCount = 0;
+    for (JsonNode objectNode : objectNodes) {
+      if (budgetTracker != null && (++objectCount & 0x3FF) == 0) {
+        budgetTracker.check();
+      }
+      if (objectStats != null) {
+        objectStats.addContainer(objectNode.size());
+      }
+      final Iterator<Map.Entry<String, JsonNode>> fields = objectNode.fields();
+      while (fields.hasNext()) {
+        final Map.Entry<String, JsonNode> field = fields.next();
+        if (field.getKey() == null || field.getValue() == null) {
+          continue;
+        }
+        final FieldValues fieldValues = (FieldValues) valuesByFieldName
+            .computeIfAbsent(field.getKey(), k -> new FieldValues());
+        fieldValues.add(field.getValue());
+        if (nonNull(field.getValue())) {
+          fieldValues.nonNullCount++;
+        }
+      }
+    }
+    if (objectStats != null) {
+      valuesByFieldName.forEach((fieldName, values) -> objectStats.addField(fieldName,
+          values.size(), ((FieldValues) values).nonNullCount));
+    }
+    return valuesByFieldName;
   }
 
   /**
-   * Get all the unique values for a field name across multiple {@link ObjectNode}s
+   * The values of a field name, along with the number of non-null values
    */
-  static Stream<JsonNode> getAllValuesForFieldName(
-      @Nonnull Iterable<? extends JsonNode> objectNodes, @Nonnull String fieldName) {
-    return stream(objectNodes)
-        .map(j -> j.get(fieldName))
-        .filter(Objects::nonNull);
+  private static final class FieldValues extends ArrayList<JsonNode> {
+
+    private static final long serialVersionUID = 1L;
+
+    int nonNullCount;
+
   }
 
   /**
@@ -251,7 +447,11 @@ final class JunkDrawer {
    * @return Whether the given number is a whole number
    */
   static boolean isMathematicalInteger(@Nonnull BigDecimal val) {
-    return val.compareTo(BigDecimal.ZERO) == 0 || val.stripTrailingZeros().scale() <= 0;
+    // Avoid stripTrailingZeros, which allocates, for the common cases
+    if (val.scale() <= 0 || val.signum() == 0) {
+      return true;
+    }
+    return val.stripTrailingZeros().scale() <= 0;
   }
 
   /**
@@ -269,6 +469,57 @@ final class JunkDrawer {
     }
   }
 
+  /**
+   * Compare the values of 2 number nodes that are not NaN or infinity. The result is always the
+   * same as comparing their {@link JsonNode#decimalValue()}s, but {@link BigDecimal}s are only
+   * allocated when a {@link BigIntegerNode} or a {@link DecimalNode} is involved, or when comparing
+   * an integral node with a very large floating point node.
+   */
+  static int compareNumberNodes(@Nonnull JsonNode a, @Nonnull JsonNode b) {
+    final boolean aIsLong = isLongNode(a), bIsLong = isLongNode(b);
+    final boolean aIsDouble = isDoubleNode(a), bIsDouble = isDoubleNode(b);
+    if (aIsLong && bIsLong) {
+      return Long.compare(a.longValue(), b.longValue());
+    } else if (aIsDouble && bIsDouble) {
+      // Do not use Double.compare, which does not treat 0.0 and -0.0 as equal
+      return compareDoubles(a.doubleValue(), b.doubleValue());
+    } else if (aIsLong && bIsDouble && Math.abs(b.doubleValue()) < MAX_EXACT_DOUBLE_INTEGER) {
+      return compareLongToDouble(a.longValue(), b.doubleValue());
+    } else if (aIsDouble && bIsLong && Math.abs(a.doubleValue()) < MAX_EXACT_DOUBLE_INTEGER) {
+      return -compareLongToDouble(b.longValue(), a.doubleValue());
+    }
+    return a.decimalValue().compareTo(b.decimalValue());
+  }
+
+  /**
+   * @return Whether the given node holds a number that fits in a long, i.e. a short, an int or a
+   *         long
+   */
+  private static boolean isLongNode(@Nonnull JsonNode jsonNode) {
+    return jsonNode.isIntegralNumber() && !jsonNode.isBigInteger();
+  }
+
+  private static boolean isDoubleNode(@Nonnull JsonNode jsonNode) {
+    return jsonNode.isFloat() || jsonNode.isDouble();
+  }
+
+  private static int compareDoubles(double a, double b) {
+    return a < b ? -1 : a > b ? 1 : 0;
+  }
+
+  /**
+   * Compare a long with a double whose magnitude is less than 2<sup>63</sup> exactly
+   */
+  private static int compareLongToDouble(long l, double d) {
+    // Exact since the magnitude of d is small enough
+    final long truncated = (long) d;
+    if (l != truncated) {
+      return l < truncated ? -1 : 1;
+    }
+    // The fractional part of a double is always exact
+    return compareDoubles(0, d - truncated);
+  }
+
   /**
    * @return Whether the input {@link JsonNode} is null or is to be serialized as null, like a
    *         {@link TextNode} with a null String.
@@ -1,8 +1,6 @@
 package com.saasquatch.jsonschemainferrer;
 
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.isMathematicalIntegerNode;
-import static com.saasquatch.jsonschemainferrer.JunkDrawer.numberNode;
-import java.math.BigInteger;
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
@@ -27,20 +25,21 @@ public final class MultipleOfPolicies {
    */
   public static MultipleOfPolicy gcd() {
     return input -> {
-      // Only proceed if all numbers are integers
-      final boolean allNumbersAreMathematicalIntegers = input.getSamples().stream()
-          .filter(JsonNode::isNumber)
-          .allMatch(j -> isMathematicalIntegerNode(j));
-      if (!allNumbersAreMathematicalIntegers) {
-        return null;
+      if (!input.hasSamples()) {
+        return input.getStats().getNumbersGcd();
       }
-      return input.getSamples().stream()
-          .filter(JsonNode::isNumber)
-          .map(JsonNode::bigIntegerValue)
-          .reduce(BigInteger::gcd)
-          .filter(gcd -> BigInteger.ZERO.compareTo(gcd) != 0)
-          .map(gcd -> numberNode(gcd))
-          .orElse(null);
+      final GcdAccumulator gcd = new GcdAccumulator();
+      for (JsonNode sample : input.getSamples()) {
+        if (!sample.isNumber()) {
+          continue;
+        }
+        // Only proceed if all numbers are integers
+        if (!isMathematicalIntegerNode(sample)) {
+          return null;
+        }
+        gcd.add(sample);
+      }
+      return gcd.getGcd();
     };
   }
 
@@ -1,7 +1,7 @@
 package com.saasquatch.jsonschemainferrer;
 
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
-import java.util.Comparator;
+import javax.annotation.Nonnull;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -17,19 +17,11 @@ public enum NumberRangeFeature implements GenericSchemaFeature {
    */
   MINIMUM {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.NUMBER_TYPES.contains(input.getType())) {
-        return null;
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      final JsonNode minNode = input.getStats().getMinNumber();
+      if (minNode != null) {
+        result.set(Consts.Fields.MINIMUM, minNode);
       }
-      return input.getSamples().stream()
-          .filter(JsonNode::isNumber)
-          .min(NUM_VALUE_COMPARATOR)
-          .map(minNode -> {
-            final ObjectNode result = newObject();
-            result.set(Consts.Fields.MINIMUM, minNode);
-            return result;
-          })
-          .orElse(null);
     }
   },
 
@@ -38,23 +30,28 @@ public enum NumberRangeFeature implements GenericSchemaFeature {
    */
   MAXIMUM {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.NUMBER_TYPES.contains(input.getType())) {
-        return null;
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      final JsonNode maxNode = input.getStats().getMaxNumber();
+      if (maxNode != null) {
+        result.set(Consts.Fields.MAXIMUM, maxNode);
       }
-      return input.getSamples().stream()
-          .filter(JsonNode::isNumber)
-          .max(NUM_VALUE_COMPARATOR)
-          .map(maxNode -> {
-            final ObjectNode result = newObject();
-            result.set(Consts.Fields.MAXIMUM, maxNode);
-            return result;
-          })
-          .orElse(null);
     }
   },;
 
-  private static final Comparator<JsonNode> NUM_VALUE_COMPARATOR =
-      Comparator.comparing(JsonNode::decimalValue);
+  @Override
+  public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
+    if (!Consts.Types.NUMBER_TYPES.contains(input.getType())) {
+      return null;
+    }
+    final ObjectNode result = newObject();
+    addFeatureResult(input, result);
+    return result.isEmpty() ? null : result;
+  }
+
+  /**
+   * Add the result of this feature to the given result without checking the type. NOT PUBLIC.
+   */
+  abstract void addFeatureResult(@Nonnull GenericSchemaFeatureInput input,
+      @Nonnull ObjectNode result);
 
 }
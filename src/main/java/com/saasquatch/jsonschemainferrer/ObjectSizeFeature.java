@@ -1,7 +1,7 @@
 package com.saasquatch.jsonschemainferrer;
 
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
-import com.fasterxml.jackson.databind.JsonNode;
+import javax.annotation.Nonnull;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -16,17 +16,9 @@ public enum ObjectSizeFeature implements GenericSchemaFeature {
    */
   MIN_PROPERTIES {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.OBJECT.equals(input.getType())) {
-        return null;
-      }
-      final ObjectNode result = newObject();
-      input.getSamples().stream()
-          .filter(JsonNode::isObject)
-          .mapToInt(JsonNode::size)
-          .min()
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      input.getStats().getMinSize()
           .ifPresent(minProps -> result.put(Consts.Fields.MIN_PROPERTIES, minProps));
-      return result;
     }
   },
 
@@ -35,18 +27,26 @@ public enum ObjectSizeFeature implements GenericSchemaFeature {
    */
   MAX_PROPERTIES {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.OBJECT.equals(input.getType())) {
-        return null;
-      }
-      final ObjectNode result = newObject();
-      input.getSamples().stream()
-          .filter(JsonNode::isObject)
-          .mapToInt(JsonNode::size)
-          .max()
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      input.getStats().getMaxSize()
           .ifPresent(maxProps -> result.put(Consts.Fields.MAX_PROPERTIES, maxProps));
-      return result;
     }
   },;
 
+  @Override
+  public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
+    if (!Consts.Types.OBJECT.equals(input.getType())) {
+      return null;
+    }
+    final ObjectNode result = newObject();
+    addFeatureResult(input, result);
+    return result;
+  }
+
+  /**
+   * Add the result of this feature to the given result without checking the type. NOT PUBLIC.
+   */
+  abstract void addFeatureResult(@Nonnull GenericSchemaFeatureInput input,
+      @Nonnull ObjectNode result);
+
 }
@@ -0,0 +1,222 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.entryOf;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Running summary of all the samples seen at a single path, i.e. the equivalent of the samples
+ * passed into one level of inference. Only {@link SampleStats} are kept for the objects, arrays and
+ * primitives at this path, with the field values and array elements summarized recursively in
+ * child {@link PathSummary}s. NOT PUBLIC.
+ *
+ * @author sli
+ * @see SchemaAccumulator
+ */
+@NotThreadSafe
+final class PathSummary implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final SampleStats stats = new SampleStats();
+  // Objects
+  private SampleStats objectStats;
+  private Map<String, PathSummary> fieldSummaries;
+  // Arrays
+  private SampleStats arrayStats;
+  private PathSummary itemsSummary;
+  /*
+   * Primitives. The keys are pairs of [type, format]. Note that for numbers, the type in the key is
+   * integer if the number is an integer according to the IntegerTypeCriterion and number
+   * otherwise, since the actual type cannot be decided until all the samples are seen.
+   */
+  private final TypeFormatTable<SampleStats> primitiveStats = new TypeFormatTable<>();
+  // Whether all the numbers at this path are integers according to the IntegerTypeCriterion
+  private boolean allNumbersAreIntegers = true;
+  /*
+   * The FormatInferrer for the primitives at this path, which can be stateful with adaptive format
+   * inference. This is not part of the summary itself and is not serialized.
+   */
+  private transient FormatInferrer formatInferrer;
+
+  PathSummary() {}
+
+  /**
+   * @return The {@link SampleStats} of all the samples at this path
+   */
+  @Nonnull
+  public SampleStats getStats() {
+    return stats;
+  }
+
+  public boolean isEmpty() {
+    return stats.getCount() == 0;
+  }
+
+  /**
+   * Start tracking a new object sample at this path
+   *
+   * @return The {@link SampleStats} for the objects
+   */
+  @Nonnull
+  public SampleStats addObject() {
+    stats.addSample();
+    if (objectStats == null) {
+      objectStats = new SampleStats();
+      fieldSummaries = new LinkedHashMap<>();
+    }
+    return objectStats;
+  }
+
+  /**
+   * @return The {@link PathSummary} for the given field name of the objects at this path
+   */
+  @Nonnull
+  public PathSummary getFieldSummary(@Nonnull String fieldName) {
+    return fieldSummaries.computeIfAbsent(fieldName, k -> new PathSummary());
+  }
+
+  /**
+   * Start tracking a new array sample at this path
+   *
+   * @return The {@link SampleStats} for the arrays
+   */
+  @Nonnull
+  public SampleStats addArray() {
+    stats.addSample();
+    if (arrayStats == null) {
+      arrayStats = new SampleStats();
+      itemsSummary = new PathSummary();
+    }
+    return arrayStats;
+  }
+
+  /**
+   * @return The {@link PathSummary} for the elements of the arrays at this path
+   */
+  @Nonnull
+  public PathSummary getItemsSummary() {
+    return itemsSummary;
+  }
+
+  /**
+   * Start tracking a new primitive sample at this path
+   *
+   * @param type the type, where numbers are either integer or number according to the
+   *        IntegerTypeCriterion
+   * @return The {@link SampleStats} for the type and format
+   */
+  @Nonnull
+  public SampleStats addPrimitive(@Nonnull String type, @Nullable String format) {
+    stats.addSample();
+    return primitiveStats.computeIfAbsent(type, format, SampleStats::new);
+  }
+
+  /**
+   * @return The {@link FormatInferrer} for the primitives at this path, created with the given
+   *         {@link JsonSchemaInferrer} the first time this is called
+   */
+  @Nonnull
+  public FormatInferrer getFormatInferrer(@Nonnull JsonSchemaInferrer inferrer) {
+    if (formatInferrer == null) {
+      formatInferrer = inferrer.newPathFormatInferrer();
+    }
+    return formatInferrer;
+  }
+
+  /**
+   * Mark that a number that is not an integer according to the IntegerTypeCriterion has been seen
+   * at this path. Note that this is separate from {@link #addPrimitive(String, String)} since NaN
+   * and infinity are numbers with the type string.
+   */
+  public void addNonIntegerNumber() {
+    allNumbersAreIntegers = false;
+  }
+
+  @Nullable
+  public SampleStats getObjectStats() {
+    return objectStats;
+  }
+
+  @Nonnull
+  public Map<String, PathSummary> getFieldSummaries() {
+    return fieldSummaries == null ? Collections.emptyMap()
+        : Collections.unmodifiableMap(fieldSummaries);
+  }
+
+  @Nullable
+  public SampleStats getArrayStats() {
+    return arrayStats;
+  }
+
+  /**
+   * @return The {@link SampleStats} of the primitives for every [type, format] combination. The
+   *         returned table should not be modified.
+   */
+  @Nonnull
+  public TypeFormatTable<SampleStats> getPrimitiveStats() {
+    return primitiveStats;
+  }
+
+  public boolean allNumbersAreIntegers() {
+    return allNumbersAreIntegers;
+  }
+
+  /**
+   * Merge another {@link PathSummary} into this one, treating the samples of the other one as
+   * coming after the samples of this one. The other {@link PathSummary} is not modified, and no
+   * mutable state is shared between the two afterwards.
+   *
+   * @param indexOffset The offset to apply to the sample indices of the other {@link PathSummary}
+   * @see SampleStats#merge(SampleStats, long)
+   */
+  public void merge(@Nonnull PathSummary other, @Nonnegative long indexOffset) {
+    // An explicit stack of the [this, other] pairs to merge, so deep summaries work
+    final Deque<Map.Entry<PathSummary, PathSummary>> stack = new ArrayDeque<>();
+    stack.push(entryOf(this, other));
+    while (!stack.isEmpty()) {
+      final Map.Entry<PathSummary, PathSummary> pair = stack.pop();
+      pair.getKey().mergeStats(pair.getValue(), indexOffset, stack);
+    }
+  }
+
+  /**
+   * Merge the stats at this path, pushing the child {@link PathSummary}s to merge onto the stack
+   */
+  private void mergeStats(@Nonnull PathSummary other, @Nonnegative long indexOffset,
+      @Nonnull Deque<Map.Entry<PathSummary, PathSummary>> stack) {
+    stats.merge(other.stats, indexOffset);
+    if (other.objectStats != null) {
+      if (objectStats == null) {
+        objectStats = new SampleStats();
+        fieldSummaries = new LinkedHashMap<>();
+      }
+      objectStats.merge(other.objectStats, indexOffset);
+      other.fieldSummaries.forEach((fieldName, otherFieldSummary) -> stack
+          .push(entryOf(getFieldSummary(fieldName), otherFieldSummary)));
+    }
+    if (other.arrayStats != null) {
+      if (arrayStats == null) {
+        arrayStats = new SampleStats();
+        itemsSummary = new PathSummary();
+      }
+      arrayStats.merge(other.arrayStats, indexOffset);
+      stack.push(entryOf(itemsSummary, other.itemsSummary));
+    }
+    for (int i = 0; i < other.primitiveStats.size(); i++) {
+      primitiveStats.computeIfAbsent(other.primitiveStats.getType(i),
+          other.primitiveStats.getFormat(i), SampleStats::new)
+          .merge(other.primitiveStats.getValue(i), indexOffset);
+    }
+    allNumbersAreIntegers &= other.allNumbersAreIntegers;
+  }
+
+}
@@ -11,7 +11,7 @@ import com.fasterxml.jackson.databind.JsonNode;
  * Helper class for keeping track of primitive samples
  *
  * @author sli
- * @see PrimitivesSummaryMap
+ * @see TypeFormatTable
  */
 @NotThreadSafe
 final class PrimitivesSummary {
@@ -1,6 +1,5 @@
 package com.saasquatch.jsonschemainferrer;
 
-import static com.saasquatch.jsonschemainferrer.JunkDrawer.getCommonFieldNames;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.stringColToArrayDistinct;
 import java.util.Set;
 import javax.annotation.Nonnull;
@@ -42,7 +41,7 @@ public final class RequiredPolicies {
   @Nullable
   private static JsonNode handleCommonFields(@Nonnull GenericSchemaFeatureInput input,
       boolean nonNull) {
-    final Set<String> commonFieldNames = getCommonFieldNames(input.getSamples(), nonNull);
+    final Set<String> commonFieldNames = input.getStats().getCommonFieldNames(nonNull);
     if (commonFieldNames.isEmpty()) {
       return null;
     }
@@ -0,0 +1,441 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A way of keeping a bounded number of samples for the built-in {@link ExamplesPolicy}s and
+ * {@link DefaultPolicy}s. A {@link Keeper} only keeps {@code O(limit)} samples no matter how many
+ * samples it is given, and the same {@link Keeper} is used whether the samples are retained or
+ * summarized by a {@link SchemaAccumulator}, so the results are the same either way. Merged
+ * {@link Keeper}s are still bounded, but the random samples after merging can differ from the ones
+ * picked from all the samples in a single pass. NOT PUBLIC.
+ *
+ * @author sli
+ */
+@Immutable
+final class SampleRetention implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Mode mode;
+  private final int limit;
+  private final long seed;
+
+  private SampleRetention(@Nonnull Mode mode, int limit, long seed) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Invalid limit");
+    }
+    this.mode = mode;
+    this.limit = limit;
+    this.seed = seed;
+  }
+
+  /**
+   * @return A {@link SampleRetention} that keeps the first distinct samples
+   */
+  public static SampleRetention firstDistinct(@Nonnegative int limit) {
+    return new SampleRetention(Mode.FIRST_DISTINCT, limit, 0);
+  }
+
+  /**
+   * @return A {@link SampleRetention} that keeps the last samples
+   */
+  public static SampleRetention last(@Nonnegative int limit) {
+    return new SampleRetention(Mode.LAST, limit, 0);
+  }
+
+  /**
+   * @return A {@link SampleRetention} that keeps uniformly random samples with reservoir sampling
+   *         seeded with the given seed
+   */
+  public static SampleRetention random(@Nonnegative int limit, long seed) {
+    return new SampleRetention(Mode.RANDOM, limit, seed);
+  }
+
+  @Nonnull
+  public Keeper newKeeper() {
+    switch (mode) {
+      case FIRST_DISTINCT:
+        return new FirstDistinctKeeper(this);
+      case LAST:
+        return new LastKeeper(this);
+      case RANDOM:
+        return new RandomKeeper(this);
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /**
+   * @return The samples kept from the given samples, in the order they appear
+   */
+  @Nonnull
+  public List<JsonNode> select(@Nonnull Collection<? extends JsonNode> samples) {
+    final Keeper keeper = newKeeper();
+    long index = 0;
+    for (JsonNode sample : samples) {
+      keeper.add(sample, index++);
+      if (keeper.isFull()) {
+        break;
+      }
+    }
+    return keeper.getSamples();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SampleRetention)) {
+      return false;
+    }
+    final SampleRetention other = (SampleRetention) obj;
+    return mode == other.mode && limit == other.limit && seed == other.seed;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(mode, limit, seed);
+  }
+
+  private enum Mode {
+    FIRST_DISTINCT, LAST, RANDOM,;
+  }
+
+  /**
+   * A built-in policy that only needs the samples kept with a {@link SampleRetention}
+   */
+  interface Policy {
+
+    @Nonnull
+    SampleRetention getSampleRetention();
+
+  }
+
+  /**
+   * The samples kept so far for a {@link SampleRetention}
+   */
+  @NotThreadSafe
+  abstract static class Keeper implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final SampleRetention retention;
+
+    Keeper(@Nonnull SampleRetention retention) {
+      this.retention = retention;
+    }
+
+    @Nonnull
+    public SampleRetention getRetention() {
+      return retention;
+    }
+
+    /**
+     * @param index the position of the sample among all the samples, used for ordering
+     */
+    public abstract void add(@Nonnull JsonNode sample, @Nonnegative long index);
+
+    /**
+     * Merge the samples of another {@link Keeper} of the same {@link SampleRetention} into this
+     * one, ordering the samples by their indices.
+     */
+    public abstract void merge(@Nonnull Keeper other, @Nonnegative long indexOffset);
+
+    /**
+     * @return Whether adding more samples can no longer change the kept samples
+     */
+    public boolean isFull() {
+      return false;
+    }
+
+    /**
+     * @return The samples kept so far, in the order they appear
+     */
+    @Nonnull
+    public abstract List<JsonNode> getSamples();
+
+    @Nonnull
+    static List<JsonNode> toSamples(@Nonnull Collection<Entry> entries) {
+      final List<JsonNode> samples = new ArrayList<>(entries.size());
+      for (Entry entry : entries) {
+        samples.add(entry.sample);
+      }
+      return samples;
+    }
+
+    /**
+     * @return The entries of both, with the offset applied to the other entries, in the order of
+     *         the sample indices. The samples of the two do not have to be consecutive.
+     */
+    @Nonnull
+    static List<Entry> mergeByIndex(@Nonnull Collection<Entry> entries,
+        @Nonnull Collection<Entry> otherEntries, long indexOffset) {
+      final List<Entry> mergedEntries = new ArrayList<>(entries.size() + otherEntries.size());
+      mergedEntries.addAll(entries);
+      for (Entry entry : otherEntries) {
+        mergedEntries.add(new Entry(entry.sample, entry.index + indexOffset));
+      }
+      mergedEntries.sort(Comparator.comparingLong(entry -> entry.index));
+      return mergedEntries;
+    }
+
+    static void writeEntries(@Nonnull ObjectOutputStream out, @Nonnull Collection<Entry> entries)
+        throws IOException {
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        SampleStats.writeSample(out, entry.sample);
+        out.writeLong(entry.index);
+      }
+    }
+
+    static void readEntries(@Nonnull ObjectInputStream in, @Nonnull Collection<Entry> entries)
+        throws IOException, ClassNotFoundException {
+      final int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        entries.add(new Entry(SampleStats.readSample(in), in.readLong()));
+      }
+    }
+
+  }
+
+  private static final class FirstDistinctKeeper extends Keeper {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient List<Entry> entries = new ArrayList<>();
+    private transient Set<JsonNode> distinctSamples = new HashSet<>();
+
+    FirstDistinctKeeper(@Nonnull SampleRetention retention) {
+      super(retention);
+    }
+
+    @Override
+    public void add(JsonNode sample, long index) {
+      if (!isFull() && distinctSamples.add(sample)) {
+        entries.add(new Entry(sample, index));
+      }
+    }
+
+    @Override
+    public void merge(Keeper other, long indexOffset) {
+      final List<Entry> mergedEntries =
+          mergeByIndex(entries, ((FirstDistinctKeeper) other).entries, indexOffset);
+      entries.clear();
+      distinctSamples.clear();
+      for (Entry entry : mergedEntries) {
+        add(entry.sample, entry.index);
+      }
+    }
+
+    @Override
+    public boolean isFull() {
+      return entries.size() >= retention.limit;
+    }
+
+    @Override
+    public List<JsonNode> getSamples() {
+      return toSamples(entries);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      writeEntries(out, entries);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      entries = new ArrayList<>();
+      readEntries(in, entries);
+      distinctSamples = new HashSet<>();
+      for (Entry entry : entries) {
+        distinctSamples.add(entry.sample);
+      }
+    }
+
+  }
+
+  private static final class LastKeeper extends Keeper {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    LastKeeper(@Nonnull SampleRetention retention) {
+      super(retention);
+    }
+
+    @Override
+    public void add(JsonNode sample, long index) {
+      if (entries.size() >= retention.limit) {
+        entries.pollFirst();
+      }
+      entries.addLast(new Entry(sample, index));
+    }
+
+    @Override
+    public void merge(Keeper other, long indexOffset) {
+      final List<Entry> mergedEntries =
+          mergeByIndex(entries, ((LastKeeper) other).entries, indexOffset);
+      entries.clear();
+      for (Entry entry : mergedEntries) {
+        add(entry.sample, entry.index);
+      }
+    }
+
+    @Override
+    public List<JsonNode> getSamples() {
+      return toSamples(entries);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      writeEntries(out, entries);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      entries = new ArrayDeque<>();
+      readEntries(in, entries);
+    }
+
+  }
+
+  /**
+   * Reservoir sampling with Algorithm R
+   */
+  private static final class RandomKeeper extends Keeper {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Random random;
+    // The number of samples seen so far, including the ones not kept
+    private long seenCount;
+    private transient List<Entry> entries = new ArrayList<>();
+
+    RandomKeeper(@Nonnull SampleRetention retention) {
+      super(retention);
+      this.random = new Random(retention.seed);
+    }
+
+    @Override
+    public void add(JsonNode sample, long index) {
+      seenCount++;
+      if (entries.size() < retention.limit) {
+        entries.add(new Entry(sample, index));
+        return;
+      }
+      final long replaceIndex = nextLong(seenCount);
+      if (replaceIndex < retention.limit) {
+        entries.set((int) replaceIndex, new Entry(sample, index));
+      }
+    }
+
+    @Override
+    public void merge(Keeper other, long indexOffset) {
+      final RandomKeeper otherKeeper = (RandomKeeper) other;
+      final List<Entry> otherEntries = new ArrayList<>(otherKeeper.entries.size());
+      for (Entry entry : otherKeeper.entries) {
+        otherEntries.add(new Entry(entry.sample, entry.index + indexOffset));
+      }
+      if (seenCount == 0) {
+        entries.addAll(otherEntries);
+        seenCount = otherKeeper.seenCount;
+        return;
+      }
+      /*
+       * Pick the merged samples one at a time without replacement, from this keeper or the other
+       * one in proportion to the number of samples each of them stands for.
+       */
+      final List<Entry> thisEntries = entries;
+      long thisRemaining = seenCount;
+      long otherRemaining = otherKeeper.seenCount;
+      final int mergedSize = Math.min(retention.limit, thisEntries.size() + otherEntries.size());
+      entries = new ArrayList<>(mergedSize);
+      for (int i = 0; i < mergedSize; i++) {
+        if (nextLong(thisRemaining + otherRemaining) < thisRemaining) {
+          entries.add(removeRandom(thisEntries));
+          thisRemaining--;
+        } else {
+          entries.add(removeRandom(otherEntries));
+          otherRemaining--;
+        }
+      }
+      seenCount += otherKeeper.seenCount;
+    }
+
+    @Override
+    public List<JsonNode> getSamples() {
+      final List<Entry> sortedEntries = new ArrayList<>(entries);
+      sortedEntries.sort(Comparator.comparingLong(entry -> entry.index));
+      return toSamples(sortedEntries);
+    }
+
+    @Nonnull
+    private Entry removeRandom(@Nonnull List<Entry> list) {
+      final int i = random.nextInt(list.size());
+      final Entry entry = list.get(i);
+      list.set(i, list.get(list.size() - 1));
+      list.remove(list.size() - 1);
+      return entry;
+    }
+
+    /**
+     * @return A uniformly random long in {@code [0, bound)}
+     */
+    private long nextLong(long bound) {
+      if (bound <= Integer.MAX_VALUE) {
+        return random.nextInt((int) bound);
+      }
+      long bits, value;
+      do {
+        bits = random.nextLong() >>> 1;
+        value = bits % bound;
+      } while (bits - value + (bound - 1) < 0);
+      return value;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      writeEntries(out, entries);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      entries = new ArrayList<>();
+      readEntries(in, entries);
+    }
+
+  }
+
+  private static final class Entry {
+
+    final JsonNode sample;
+    final long index;
+
+    Entry(@Nonnull JsonNode sample, long index) {
+      this.sample = sample;
+      this.index = index;
+    }
+
+  }
+
+}
@@ -0,0 +1,462 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.compareNumberNodes;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.getSerializedTextLength;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.isMathematicalIntegerNode;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.isTextualFloat;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.FloatNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ShortNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * Running statistics of the samples behind a single (sub)schema. This is what the built-in
+ * {@link GenericSchemaFeature}s work with when the samples themselves are not retained, e.g. when
+ * inferring with a {@link SchemaAccumulator}. The memory used by this class does not depend on the
+ * number of samples. Note that the {@link JsonNode}s kept are the samples themselves and are
+ * expected to not be mutated. NOT PUBLIC.
+ *
+ * @author sli
+ */
+@NotThreadSafe
+final class SampleStats implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private long count;
+  // Primitives only. The indices are used to figure out the order of the samples after merging.
+  private transient JsonNode firstSample;
+  private long firstSampleIndex;
+  private transient JsonNode lastSample;
+  private long lastSampleIndex;
+  private int minTextLength = Integer.MAX_VALUE;
+  private int maxTextLength = -1;
+  private transient JsonNode minNumber;
+  private long minNumberIndex;
+  private transient JsonNode maxNumber;
+  private long maxNumberIndex;
+  private boolean allNumbersAreMathematicalIntegers = true;
+  // Null if there are no integers or if not all numbers are integers
+  private GcdAccumulator numbersGcd;
+  // Only for the SampleRetentions in use, so they do not depend on the number of samples either
+  private List<SampleRetention.Keeper> sampleKeepers;
+  // Objects and arrays only
+  private int minSize = Integer.MAX_VALUE;
+  private int maxSize = -1;
+  // Objects only
+  private Map<String, FieldCount> fieldCounts;
+
+  SampleStats() {}
+
+  /**
+   * Keep track of a new sample without any further statistics. Used for {@code anyOf} schemas.
+   */
+  public void addSample() {
+    count++;
+  }
+
+  /**
+   * Keep track of a new primitive sample
+   *
+   * @param index the position of the sample among all the samples, used for ordering
+   */
+  public void addPrimitive(@Nonnull JsonNode sample, @Nonnegative long index) {
+    count++;
+    if (firstSample == null) {
+      firstSample = sample;
+      firstSampleIndex = index;
+    }
+    lastSample = sample;
+    lastSampleIndex = index;
+    final int textLength = getSerializedTextLength(sample);
+    if (textLength >= 0) {
+      minTextLength = Math.min(minTextLength, textLength);
+      maxTextLength = Math.max(maxTextLength, textLength);
+    }
+    if (sample.isNumber() && !isTextualFloat(sample)) {
+      addNumber(sample, index);
+    }
+  }
+
+  private void addNumber(@Nonnull JsonNode sample, long index) {
+    if (minNumber == null || compareNumberNodes(sample, minNumber) < 0) {
+      minNumber = sample;
+      minNumberIndex = index;
+    }
+    if (maxNumber == null || compareNumberNodes(sample, maxNumber) > 0) {
+      maxNumber = sample;
+      maxNumberIndex = index;
+    }
+    if (!allNumbersAreMathematicalIntegers) {
+      return;
+    }
+    if (!isMathematicalIntegerNode(sample)) {
+      allNumbersAreMathematicalIntegers = false;
+      numbersGcd = null;
+      return;
+    }
+    if (numbersGcd == null) {
+      numbersGcd = new GcdAccumulator();
+    }
+    numbersGcd.add(sample);
+  }
+
+  /**
+   * Keep a new primitive sample for every one of the given {@link SampleRetention}s
+   *
+   * @param index the position of the sample among all the samples, used for ordering
+   */
+  public void retainPrimitive(@Nonnull JsonNode sample, @Nonnegative long index,
+      @Nonnull List<SampleRetention> retentions) {
+    for (SampleRetention retention : retentions) {
+      getOrCreateSampleKeeper(retention).add(sample, index);
+    }
+  }
+
+  @Nonnull
+  private SampleRetention.Keeper getOrCreateSampleKeeper(@Nonnull SampleRetention retention) {
+    SampleRetention.Keeper keeper = getSampleKeeper(retention);
+    if (keeper == null) {
+      if (sampleKeepers == null) {
+        sampleKeepers = new ArrayList<>(1);
+      }
+      keeper = retention.newKeeper();
+      sampleKeepers.add(keeper);
+    }
+    return keeper;
+  }
+
+  @Nullable
+  private SampleRetention.Keeper getSampleKeeper(@Nonnull SampleRetention retention) {
+    if (sampleKeepers != null) {
+      for (SampleRetention.Keeper keeper : sampleKeepers) {
+        if (keeper.getRetention().equals(retention)) {
+          return keeper;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Keep track of a new object or array sample
+   *
+   * @param size the number of fields or elements of the sample
+   */
+  public void addContainer(@Nonnegative int size) {
+    count++;
+    minSize = Math.min(minSize, size);
+    maxSize = Math.max(maxSize, size);
+  }
+
+  /**
+   * Keep track of a field of an object sample. This is meant to be called once for every field
+   * name in every object sample.
+   *
+   * @param nonNull whether the field value is not null
+   */
+  public void addField(@Nonnull String fieldName, boolean nonNull) {
+    addField(fieldName, 1, nonNull ? 1 : 0);
+  }
+
+  /**
+   * Keep track of a field of multiple object samples at once
+   *
+   * @param present the number of object samples with the field
+   * @param nonNull the number of object samples where the field value is not null
+   */
+  public void addField(@Nonnull String fieldName, @Nonnegative long present,
+      @Nonnegative long nonNull) {
+    if (fieldCounts == null) {
+      fieldCounts = new LinkedHashMap<>();
+    }
+    final FieldCount fieldCount = fieldCounts.computeIfAbsent(fieldName, k -> new FieldCount());
+    fieldCount.present += present;
+    fieldCount.nonNull += nonNull;
+  }
+
+  /**
+   * Merge another {@link SampleStats} from the same sequence of samples into this one
+   */
+  public void merge(@Nonnull SampleStats other) {
+    merge(other, 0);
+  }
+
+  /**
+   * Merge another {@link SampleStats} into this one
+   *
+   * @param indexOffset The offset to apply to the sample indices of the other {@link SampleStats},
+   *        e.g. the number of primitives before the samples of the other one
+   */
+  public void merge(@Nonnull SampleStats other, @Nonnegative long indexOffset) {
+    count += other.count;
+    if (other.firstSample != null
+        && (firstSample == null || other.firstSampleIndex + indexOffset < firstSampleIndex)) {
+      firstSample = other.firstSample;
+      firstSampleIndex = other.firstSampleIndex + indexOffset;
+    }
+    if (other.lastSample != null
+        && (lastSample == null || other.lastSampleIndex + indexOffset > lastSampleIndex)) {
+      lastSample = other.lastSample;
+      lastSampleIndex = other.lastSampleIndex + indexOffset;
+    }
+    minTextLength = Math.min(minTextLength, other.minTextLength);
+    maxTextLength = Math.max(maxTextLength, other.maxTextLength);
+    if (other.minNumber != null) {
+      final int cmp = minNumber == null ? -1 : compareNumberNodes(other.minNumber, minNumber);
+      if (cmp < 0 || (cmp == 0 && other.minNumberIndex + indexOffset < minNumberIndex)) {
+        minNumber = other.minNumber;
+        minNumberIndex = other.minNumberIndex + indexOffset;
+      }
+    }
+    if (other.maxNumber != null) {
+      final int cmp = maxNumber == null ? 1 : compareNumberNodes(other.maxNumber, maxNumber);
+      if (cmp > 0 || (cmp == 0 && other.maxNumberIndex + indexOffset < maxNumberIndex)) {
+        maxNumber = other.maxNumber;
+        maxNumberIndex = other.maxNumberIndex + indexOffset;
+      }
+    }
+    allNumbersAreMathematicalIntegers &= other.allNumbersAreMathematicalIntegers;
+    if (!allNumbersAreMathematicalIntegers) {
+      numbersGcd = null;
+    } else if (other.numbersGcd != null) {
+      if (numbersGcd == null) {
+        numbersGcd = new GcdAccumulator();
+      }
+      numbersGcd.merge(other.numbersGcd);
+    }
+    minSize = Math.min(minSize, other.minSize);
+    maxSize = Math.max(maxSize, other.maxSize);
+    if (other.fieldCounts != null) {
+      other.fieldCounts.forEach((fieldName, otherFieldCount) -> addField(fieldName,
+          otherFieldCount.present, otherFieldCount.nonNull));
+    }
+    if (other.sampleKeepers != null) {
+      for (SampleRetention.Keeper otherKeeper : other.sampleKeepers) {
+        getOrCreateSampleKeeper(otherKeeper.getRetention()).merge(otherKeeper, indexOffset);
+      }
+    }
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  @Nullable
+  public JsonNode getFirstSample() {
+    return firstSample;
+  }
+
+  /**
+   * @return The position of the first sample among all the samples, or -1 if there are no primitive
+   *         samples
+   */
+  public long getFirstSampleIndex() {
+    return firstSample == null ? -1 : firstSampleIndex;
+  }
+
+  @Nullable
+  public JsonNode getLastSample() {
+    return lastSample;
+  }
+
+  /**
+   * @return The min serialized text length of the textual samples
+   */
+  public OptionalInt getMinTextLength() {
+    return maxTextLength < 0 ? OptionalInt.empty() : OptionalInt.of(minTextLength);
+  }
+
+  /**
+   * @return The max serialized text length of the textual samples
+   */
+  public OptionalInt getMaxTextLength() {
+    return maxTextLength < 0 ? OptionalInt.empty() : OptionalInt.of(maxTextLength);
+  }
+
+  /**
+   * @return The first smallest number sample
+   */
+  @Nullable
+  public JsonNode getMinNumber() {
+    return minNumber;
+  }
+
+  /**
+   * @return The first largest number sample
+   */
+  @Nullable
+  public JsonNode getMaxNumber() {
+    return maxNumber;
+  }
+
+  /**
+   * @return The GCD of the number samples, or null if not all of them are mathematical integers or
+   *         if the GCD is 0.
+   */
+  @Nullable
+  public JsonNode getNumbersGcd() {
+    if (!allNumbersAreMathematicalIntegers || numbersGcd == null) {
+      return null;
+    }
+    return numbersGcd.getGcd();
+  }
+
+  /**
+   * @return The min number of fields or elements of the object or array samples
+   */
+  public OptionalInt getMinSize() {
+    return maxSize < 0 ? OptionalInt.empty() : OptionalInt.of(minSize);
+  }
+
+  /**
+   * @return The max number of fields or elements of the object or array samples
+   */
+  public OptionalInt getMaxSize() {
+    return maxSize < 0 ? OptionalInt.empty() : OptionalInt.of(maxSize);
+  }
+
+  /**
+   * @return The field names common to all the object samples, in the order they are first seen.
+   *         This only looks at the counters of every field name.
+   * @see JunkDrawer#getCommonFieldNames(Iterable, boolean)
+   */
+  @Nonnull
+  public Set<String> getCommonFieldNames(boolean requireNonNull) {
+    if (fieldCounts == null) {
+      return Collections.emptySet();
+    }
+    final Set<String> commonFieldNames = new LinkedHashSet<>();
+    fieldCounts.forEach((fieldName, fieldCount) -> {
+      if ((requireNonNull ? fieldCount.nonNull : fieldCount.present) == count) {
+        commonFieldNames.add(fieldName);
+      }
+    });
+    return commonFieldNames.isEmpty() ? Collections.emptySet()
+        : Collections.unmodifiableSet(commonFieldNames);
+  }
+
+  /**
+   * @return The primitive samples kept with the given {@link SampleRetention}, in the order they
+   *         appear, or null if they are not kept
+   * @see #retainPrimitive(JsonNode, long, List)
+   */
+  @Nullable
+  public List<JsonNode> getRetainedSamples(@Nonnull SampleRetention retention) {
+    final SampleRetention.Keeper keeper = getSampleKeeper(retention);
+    return keeper == null ? null : keeper.getSamples();
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    writeSample(out, firstSample);
+    writeSample(out, lastSample);
+    writeSample(out, minNumber);
+    writeSample(out, maxNumber);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    firstSample = readSample(in);
+    lastSample = readSample(in);
+    minNumber = readSample(in);
+    maxNumber = readSample(in);
+  }
+
+  /**
+   * Write a primitive sample in a way that preserves its exact {@link JsonNode} type, since the
+   * built-in serialization of {@link JsonNode} goes through JSON text.
+   */
+  static void writeSample(@Nonnull ObjectOutputStream out, @Nullable JsonNode sample)
+      throws IOException {
+    if (sample == null) {
+      out.writeObject(null);
+    } else if (sample.isNumber()) {
+      out.writeObject(sample.numberValue());
+    } else if (sample.isTextual()) {
+      out.writeObject(sample.textValue());
+    } else if (sample.isBoolean()) {
+      out.writeObject(sample.booleanValue());
+    } else if (sample.isBinary()) {
+      out.writeObject(sample.binaryValue());
+    } else if (sample.isNull() || sample.isMissingNode()) {
+      out.writeObject(sample.getNodeType());
+    } else {
+      out.writeObject(sample);
+    }
+  }
+
+  @Nullable
+  static JsonNode readSample(@Nonnull ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    final Object value = in.readObject();
+    if (value == null) {
+      return null;
+    } else if (value instanceof Short) {
+      return ShortNode.valueOf((Short) value);
+    } else if (value instanceof Integer) {
+      return IntNode.valueOf((Integer) value);
+    } else if (value instanceof Long) {
+      return LongNode.valueOf((Long) value);
+    } else if (value instanceof BigInteger) {
+      return BigIntegerNode.valueOf((BigInteger) value);
+    } else if (value instanceof Float) {
+      return FloatNode.valueOf((Float) value);
+    } else if (value instanceof Double) {
+      return DoubleNode.valueOf((Double) value);
+    } else if (value instanceof BigDecimal) {
+      return DecimalNode.valueOf((BigDecimal) value);
+    } else if (value instanceof String) {
+      return TextNode.valueOf((String) value);
+    } else if (value instanceof Boolean) {
+      return BooleanNode.valueOf((Boolean) value);
+    } else if (value instanceof byte[]) {
+      return BinaryNode.valueOf((byte[]) value);
+    } else if (value == JsonNodeType.NULL) {
+      return NullNode.getInstance();
+    } else if (value == JsonNodeType.MISSING) {
+      return MissingNode.getInstance();
+    } else if (value instanceof JsonNode) {
+      return (JsonNode) value;
+    }
+    throw new InvalidObjectException("Unrecognized sample: " + value.getClass());
+  }
+
+  private static final class FieldCount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    long present;
+    long nonNull;
+  }
+
+}
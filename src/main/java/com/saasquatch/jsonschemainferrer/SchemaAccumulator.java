@@ -0,0 +1,355 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.isTextualFloat;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
+
+/**
+ * Accumulator for inferring JSON schema from samples added one at a time. The samples are not
+ * retained. Only running summaries for every path are kept (types, formats, min/max, lengths,
+ * field counts, etc.), so the memory used depends on the shape of the samples and not on the
+ * number of samples. This class is mutable and not thread safe.
+ * <p>
+ * Since the samples are not retained, {@link GenericSchemaFeature}s that rely on
+ * {@link GenericSchemaFeatureInput#getSamples()} will fail with an {@link IllegalStateException}.
+ * The built-in features work with the running summaries, and the built-in
+ * {@link ExamplesPolicies} and {@link DefaultPolicies} only keep a bounded number of samples for
+ * every path.
+ *
+ * @author sli
+ * @see JsonSchemaInferrer#newSchemaAccumulator()
+ * @see #toSummary()
+ */
+@Beta
+@NotThreadSafe
+public final class SchemaAccumulator {
+
+  private final JsonSchemaInferrer inferrer;
+  private final PathSummary rootSummary = new PathSummary();
+  // The number of primitives seen so far, used for keeping track of the order of the primitives
+  private long primitiveCount;
+
+  SchemaAccumulator(@Nonnull JsonSchemaInferrer inferrer) {
+    this.inferrer = inferrer;
+  }
+
+  /**
+   * Add a sample JSON. Note that if this method throws, the accumulator may be left with a partial
+   * summary of the sample and should be discarded.
+   *
+   * @param sample the sample JSON
+   * @return this
+   * @throws IllegalArgumentException if the sample contains unsupported {@link JsonNode}s
+   */
+  public SchemaAccumulator add(@Nullable JsonNode sample) {
+    addToSummary(rootSummary, inferrer.preProcessSample(sample));
+    return this;
+  }
+
+  /**
+   * Add all the remaining sample JSONs from a {@link JsonParser}, where every root level value is a
+   * sample, e.g. a stream of newline delimited JSONs. If the parser is currently pointing at a
+   * token, the value starting at that token is the first sample. The tokens are fed into the
+   * summaries directly without building {@link JsonNode} trees for the objects and arrays. The
+   * parser is not closed.
+   * <p>
+   * Note that duplicate field names within a single object are summarized as they appear, as
+   * opposed to keeping the last one like {@link com.fasterxml.jackson.databind.ObjectMapper#readTree(JsonParser)} does.
+   *
+   * @param parser the parser to read the sample JSONs from
+   * @return this
+   * @throws IOException if the parser throws
+   * @throws IllegalArgumentException if the samples contain unsupported values, like embedded POJOs
+   */
+  public SchemaAccumulator addAll(@Nonnull JsonParser parser) throws IOException {
+    JsonToken token = parser.hasCurrentToken() ? parser.currentToken() : parser.nextToken();
+    for (; token != null; token = parser.nextToken()) {
+      addToSummary(rootSummary, parser);
+    }
+    return this;
+  }
+
+  /**
+   * Merge all the samples of another {@link SchemaAccumulator} into this one, treating them as
+   * coming after the samples of this one. The other accumulator is not modified.
+   *
+   * @return this
+   */
+  @Nonnull
+  SchemaAccumulator merge(@Nonnull SchemaAccumulator other) {
+    if (other.inferrer != inferrer) {
+      throw new IllegalArgumentException("Unable to merge "
+          + SchemaAccumulator.class.getSimpleName() + "s of different inferrers");
+    }
+    rootSummary.merge(other.rootSummary, primitiveCount);
+    primitiveCount += other.primitiveCount;
+    return this;
+  }
+
+  /**
+   * @return The number of samples added so far
+   */
+  public long getSampleCount() {
+    return rootSummary.getStats().getCount();
+  }
+
+  /**
+   * Infer the JSON schema from all the samples added so far. This method does not change the state
+   * of the accumulator, and more samples can be added after calling it.
+   *
+   * @return the inferred JSON schema
+   * @throws IllegalStateException if no samples have been added
+   */
+  @Nonnull
+  public ObjectNode toSchema() {
+    return inferrer.inferForSummary(rootSummary);
+  }
+
+  /**
+   * Take a snapshot of the summary of all the samples added so far, which can be merged with the
+   * summaries from other accumulators. Adding more samples to this accumulator afterwards does not
+   * affect the returned {@link SchemaSummary}.
+   *
+   * @return the {@link SchemaSummary} of all the samples added so far
+   */
+  @Nonnull
+  public SchemaSummary toSummary() {
+    final PathSummary summaryCopy = new PathSummary();
+    summaryCopy.merge(rootSummary, 0);
+    return new SchemaSummary(summaryCopy, primitiveCount);
+  }
+
+  /**
+   * Summarize a sample and everything in it, using an explicit stack instead of recursion so deep
+   * samples do not overflow the stack
+   *
+   * @param rootSample A sample that has gone through {@link JsonSchemaInferrer#preProcessSample}
+   */
+  private void addToSummary(@Nonnull PathSummary rootSummary, @Nonnull JsonNode rootSample) {
+    final Deque<NodeFrame> stack = new ArrayDeque<>();
+    PathSummary summary = rootSummary;
+    JsonNode sample = rootSample;
+    while (true) {
+      if (sample.isObject()) {
+        final SampleStats objectStats = summary.addObject();
+        objectStats.addContainer(sample.size());
+        stack.push(new NodeFrame(summary, objectStats, sample.fields(), null));
+      } else if (sample.isArray()) {
+        summary.addArray().addContainer(sample.size());
+        stack.push(new NodeFrame(summary.getItemsSummary(), null, null, sample.elements()));
+      } else {
+        addPrimitiveToSummary(summary, sample);
+      }
+      // Move on to the next field value or array element that has not been summarized
+      while (!stack.isEmpty() && !stack.peek().hasNext()) {
+        stack.pop();
+      }
+      final NodeFrame frame = stack.peek();
+      if (frame == null) {
+        return;
+      }
+      if (frame.fields != null) {
+        final Map.Entry<String, JsonNode> field = frame.fields.next();
+        sample = inferrer.preProcessSample(field.getValue());
+        frame.objectStats.addField(field.getKey(), !sample.isNull());
+        summary = frame.summary.getFieldSummary(field.getKey());
+      } else {
+        sample = inferrer.preProcessSample(frame.elements.next());
+        summary = frame.summary;
+      }
+    }
+  }
+
+  /**
+   * Summarize the value starting at the current token of the parser, leaving the parser at the last
+   * token of the value. An explicit stack is used instead of recursion so deep values do not
+   * overflow the stack.
+   */
+  private void addToSummary(@Nonnull PathSummary rootSummary, @Nonnull JsonParser parser)
+      throws IOException {
+    final Deque<ParserFrame> stack = new ArrayDeque<>();
+    PathSummary summary = rootSummary;
+    while (true) {
+      final JsonToken token = parser.currentToken();
+      if (token == JsonToken.START_OBJECT) {
+        stack.push(new ParserFrame(summary, summary.addObject(), true));
+      } else if (token == JsonToken.START_ARRAY) {
+        final SampleStats arrayStats = summary.addArray();
+        stack.push(new ParserFrame(summary.getItemsSummary(), arrayStats, false));
+      } else {
+        addPrimitiveToSummary(summary, inferrer.preProcessSample(readPrimitive(parser)));
+      }
+      // Move on to the next value that is not a primitive field value, ending the containers
+      ParserFrame frame;
+      while ((frame = stack.peek()) != null) {
+        if (frame.isObject) {
+          if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            frame.stats.addContainer(frame.size);
+            stack.pop();
+            continue;
+          }
+          frame.size++;
+          final String fieldName = parser.getCurrentName();
+          final JsonToken valueToken = parser.nextToken();
+          summary = frame.summary.getFieldSummary(fieldName);
+          if (valueToken.isStructStart()) {
+            frame.stats.addField(fieldName, true);
+            break;
+          }
+          final JsonNode fieldValue = inferrer.preProcessSample(readPrimitive(parser));
+          frame.stats.addField(fieldName, !fieldValue.isNull());
+          addPrimitiveToSummary(summary, fieldValue);
+        } else {
+          if (parser.nextToken() == JsonToken.END_ARRAY) {
+            frame.stats.addContainer(frame.size);
+            stack.pop();
+            continue;
+          }
+          frame.size++;
+          summary = frame.summary;
+          break;
+        }
+      }
+      if (frame == null) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Read the scalar value at the current token of the parser. The {@link JsonNode}s created are
+   * the same as the ones {@link com.fasterxml.jackson.databind.ObjectMapper#readTree(JsonParser)} would create with the default
+   * settings, with numbers classified with {@link JsonParser#getNumberType()}.
+   */
+  @Nonnull
+  private static JsonNode readPrimitive(@Nonnull JsonParser parser) throws IOException {
+    final JsonToken token = parser.currentToken();
+    switch (token) {
+      case VALUE_STRING:
+        return JsonNodeFactory.instance.textNode(parser.getText());
+      case VALUE_NUMBER_INT:
+        switch (parser.getNumberType()) {
+          case INT:
+            return JsonNodeFactory.instance.numberNode(parser.getIntValue());
+          case LONG:
+            return JsonNodeFactory.instance.numberNode(parser.getLongValue());
+          default:
+            return JsonNodeFactory.instance.numberNode(parser.getBigIntegerValue());
+        }
+      case VALUE_NUMBER_FLOAT:
+        switch (parser.getNumberType()) {
+          case BIG_DECIMAL:
+            return JsonNodeFactory.instance.numberNode(parser.getDecimalValue());
+          case FLOAT:
+            return JsonNodeFactory.instance.numberNode(parser.getFloatValue());
+          default:
+            return JsonNodeFactory.instance.numberNode(parser.getDoubleValue());
+        }
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return JsonNodeFactory.instance.booleanNode(token == JsonToken.VALUE_TRUE);
+      case VALUE_NULL:
+        return JsonNodeFactory.instance.nullNode();
+      case VALUE_EMBEDDED_OBJECT: {
+        final Object embeddedObject = parser.getEmbeddedObject();
+        if (embeddedObject == null) {
+          return JsonNodeFactory.instance.nullNode();
+        } else if (embeddedObject instanceof byte[]) {
+          return JsonNodeFactory.instance.binaryNode((byte[]) embeddedObject);
+        }
+        return JsonNodeFactory.instance.pojoNode(embeddedObject);
+      }
+      default:
+        throw new IllegalArgumentException("Unexpected token: " + token);
+    }
+  }
+
+  private void addPrimitiveToSummary(@Nonnull PathSummary summary, @Nonnull JsonNode sample) {
+    final String type;
+    if (sample.isNumber()) {
+      final boolean isInteger = inferrer.isInteger(sample);
+      if (!isInteger) {
+        summary.addNonIntegerNumber();
+      }
+      if (isTextualFloat(sample)) {
+        // This covers NaN and infinity
+        type = Consts.Types.STRING;
+      } else {
+        type = isInteger ? Consts.Types.INTEGER : Consts.Types.NUMBER;
+      }
+    } else {
+      type = inferrer.inferPrimitiveType(sample, false);
+    }
+    final String format = inferrer.inferFormat(summary.getFormatInferrer(inferrer), sample);
+    final SampleStats stats = summary.addPrimitive(type, format);
+    final List<SampleRetention> sampleRetentions = inferrer.getSampleRetentions();
+    if (!sampleRetentions.isEmpty()) {
+      stats.retainPrimitive(sample, primitiveCount, sampleRetentions);
+    }
+    stats.addPrimitive(sample, primitiveCount++);
+  }
+
+  /**
+   * An object or an array of a {@link JsonNode} sample being summarized
+   */
+  private static final class NodeFrame {
+
+    // The summary of the objects, or the summary of the array elements
+    final PathSummary summary;
+    // The stats of the objects, or null for arrays
+    final SampleStats objectStats;
+    // Null for arrays
+    final Iterator<Map.Entry<String, JsonNode>> fields;
+    // Null for objects
+    final Iterator<JsonNode> elements;
+
+    NodeFrame(@Nonnull PathSummary summary, @Nullable SampleStats objectStats,
+        @Nullable Iterator<Map.Entry<String, JsonNode>> fields,
+        @Nullable Iterator<JsonNode> elements) {
+      this.summary = summary;
+      this.objectStats = objectStats;
+      this.fields = fields;
+      this.elements = elements;
+    }
+
+    boolean hasNext() {
+      return fields != null ? fields.hasNext() : elements.hasNext();
+    }
+
+  }
+
+  /**
+   * An object or an array being summarized from a {@link JsonParser}
+   */
+  private static final class ParserFrame {
+
+    // The summary of the objects, or the summary of the array elements
+    final PathSummary summary;
+    // The stats of the objects or the arrays
+    final SampleStats stats;
+    final boolean isObject;
+    // The number of fields or elements so far
+    int size;
+
+    ParserFrame(@Nonnull PathSummary summary, @Nonnull SampleStats stats, boolean isObject) {
+      this.summary = summary;
+      this.stats = stats;
+      this.isObject = isObject;
+    }
+
+  }
+
+}
@@ -0,0 +1,100 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.io.Serializable;
+import java.util.Objects;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import com.saasquatch.jsonschemainferrer.annotations.Beta;
+
+/**
+ * Immutable partial summary of a sequence of samples, which can be built on any worker with a
+ * {@link SchemaAccumulator}, merged with other summaries, and finished into a JSON schema with
+ * {@link JsonSchemaInferrer#inferForSummary(SchemaSummary)}. This allows inferring JSON schema in a
+ * map-reduce style where only the summaries are shipped around. This class is
+ * {@link Serializable}, and the size of a summary depends on the shape of the samples and not on
+ * the number of samples.
+ * <p>
+ * {@link #merge(SchemaSummary, SchemaSummary)} is associative, and {@link #empty()} is its
+ * identity. Merging the summaries of multiple sequences of samples and finishing the result gives
+ * the same schema as calling {@link JsonSchemaInferrer#inferForSamples(java.util.Collection)} with
+ * the concatenation of the sequences, with the exception of
+ * {@link ExamplesPolicies#useRandomSamples(int, long)} and
+ * {@link DefaultPolicies#useRandomSamples(long)}, since merging their random samples picks from
+ * every summary in proportion to its number of samples instead of replaying a single pass, and of
+ * {@link JsonSchemaInferrerBuilder#setValueInspectionLimit(int, long)} and
+ * {@link JsonSchemaInferrerBuilder#setAdaptiveFormatInference(int)}, since every summary inspects
+ * its own first samples at every path instead of the first samples of the concatenation. Merging
+ * is also commutative as far as the resulting schema is concerned, with the exception of the parts
+ * that depend on the order of the samples, e.g. {@link DefaultPolicies#useFirstSamples()},
+ * {@link DefaultPolicies#useLastSamples()} and the order of the elements in {@code anyOf}.
+ * <p>
+ * Note that a summary can only be finished by a {@link JsonSchemaInferrer} with the same
+ * configuration as the one used to build the summary, since things like the formats and integer
+ * types are decided while building the summary, before any merging. This includes the formats
+ * with {@link JsonSchemaInferrerBuilder#setValueInspectionLimit(int, long)}, which are inferred or
+ * checked for every sample as it is added.
+ *
+ * @author sli
+ * @see SchemaAccumulator#toSummary()
+ */
+@Beta
+@Immutable
+public final class SchemaSummary implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final SchemaSummary EMPTY = new SchemaSummary(new PathSummary(), 0);
+
+  // Never mutated after construction
+  private final PathSummary rootSummary;
+  // The number of primitives in the summary, used for ordering the samples of merged summaries
+  private final long primitiveCount;
+
+  SchemaSummary(@Nonnull PathSummary rootSummary, @Nonnegative long primitiveCount) {
+    this.rootSummary = rootSummary;
+    this.primitiveCount = primitiveCount;
+  }
+
+  /**
+   * @return The summary of no samples, which is the identity of
+   *         {@link #merge(SchemaSummary, SchemaSummary)}
+   */
+  @Nonnull
+  public static SchemaSummary empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Merge two summaries into a new one, treating the samples of {@code b} as coming after the
+   * samples of {@code a}. Neither of the input summaries is modified.
+   *
+   * @return the summary of the samples of both summaries
+   */
+  @Nonnull
+  public static SchemaSummary merge(@Nonnull SchemaSummary a, @Nonnull SchemaSummary b) {
+    Objects.requireNonNull(a);
+    Objects.requireNonNull(b);
+    final PathSummary rootSummary = new PathSummary();
+    rootSummary.merge(a.rootSummary, 0);
+    rootSummary.merge(b.rootSummary, a.primitiveCount);
+    return new SchemaSummary(rootSummary, a.primitiveCount + b.primitiveCount);
+  }
+
+  /**
+   * @return The number of samples in this summary
+   */
+  public long getSampleCount() {
+    return rootSummary.getStats().getCount();
+  }
+
+  @Nonnull
+  PathSummary getRootSummary() {
+    return rootSummary;
+  }
+
+  long getPrimitiveCount() {
+    return primitiveCount;
+  }
+
+}
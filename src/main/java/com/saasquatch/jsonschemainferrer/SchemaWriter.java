@@ -0,0 +1,177 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+/**
+ * Utilities for writing JSON schemas straight to a {@link JsonGenerator}. The schema is walked with
+ * an explicit stack, unlike {@link JsonNode#toString()}, so schemas of deep samples can be written
+ * as well, and the field names from {@link Consts.Fields} are written with precomputed
+ * {@link SerializedString}s, so they are only quoted and encoded once. The output is the same as
+ * {@link JsonNode#toString()} with a default {@link JsonGenerator}. NOT PUBLIC.
+ *
+ * @author sli
+ */
+final class SchemaWriter {
+
+  private static final Map<String, SerializableString> SERIALIZED_FIELD_NAMES =
+      getSerializedFieldNames();
+
+  private SchemaWriter() {}
+
+  /**
+   * Write the given schema as a single value to the given generator. The generator is not
+   * flushed.
+   */
+  static void write(@Nonnull JsonNode schema, @Nonnull JsonGenerator generator)
+      throws IOException {
+    final Deque<Iterator<Map.Entry<String, JsonNode>>> stack = new ArrayDeque<>();
+    // The first entry of the stack holds the schema itself, so it has no field name
+    stack.push(Collections.singletonMap((String) null, schema).entrySet().iterator());
+    while (true) {
+      final Iterator<Map.Entry<String, JsonNode>> children = stack.peek();
+      if (!children.hasNext()) {
+        stack.pop();
+        // The first entry is the only one that is not a container
+        if (stack.isEmpty()) {
+          break;
+        }
+        if (children instanceof ArrayChildren) {
+          generator.writeEndArray();
+        } else {
+          generator.writeEndObject();
+        }
+        continue;
+      }
+      final Map.Entry<String, JsonNode> child = children.next();
+      if (child.getKey() != null) {
+        writeFieldName(child.getKey(), generator);
+      }
+      final JsonNode node = child.getValue();
+      if (node.isObject()) {
+        generator.writeStartObject();
+        stack.push(node.fields());
+      } else if (node.isArray()) {
+        generator.writeStartArray();
+        stack.push(new ArrayChildren(node.elements()));
+      } else {
+        writeScalar(node, generator);
+      }
+    }
+  }
+
+  private static void writeFieldName(@Nonnull String fieldName, @Nonnull JsonGenerator generator)
+      throws IOException {
+    final SerializableString serializedFieldName = SERIALIZED_FIELD_NAMES.get(fieldName);
+    if (serializedFieldName == null) {
+      generator.writeFieldName(fieldName);
+    } else {
+      generator.writeFieldName(serializedFieldName);
+    }
+  }
+
+  private static void writeScalar(@Nonnull JsonNode node, @Nonnull JsonGenerator generator)
+      throws IOException {
+    switch (node.getNodeType()) {
+      case STRING:
+        generator.writeString(node.textValue());
+        break;
+      case BOOLEAN:
+        generator.writeBoolean(node.booleanValue());
+        break;
+      case NUMBER:
+        writeNumber(node, generator);
+        break;
+      case BINARY:
+        generator.writeBinary(node.binaryValue());
+        break;
+      case POJO:
+        generator.writeObject(((POJONode) node).getPojo());
+        break;
+      default:
+        generator.writeNull();
+        break;
+    }
+  }
+
+  private static void writeNumber(@Nonnull JsonNode node, @Nonnull JsonGenerator generator)
+      throws IOException {
+    switch (node.numberType()) {
+      case INT:
+        generator.writeNumber(node.intValue());
+        break;
+      case LONG:
+        generator.writeNumber(node.longValue());
+        break;
+      case BIG_INTEGER:
+        generator.writeNumber(node.bigIntegerValue());
+        break;
+      case FLOAT:
+        generator.writeNumber(node.floatValue());
+        break;
+      case BIG_DECIMAL:
+        generator.writeNumber(node.decimalValue());
+        break;
+      default:
+        generator.writeNumber(node.doubleValue());
+        break;
+    }
+  }
+
+  /**
+   * @return All the field names from {@link Consts.Fields}, so new fields get serialized without
+   *         having to be listed here
+   */
+  private static Map<String, SerializableString> getSerializedFieldNames() {
+    final Map<String, SerializableString> serializedFieldNames = new HashMap<>();
+    for (Field field : Consts.Fields.class.getFields()) {
+      if (field.getType() != String.class) {
+        continue;
+      }
+      final String fieldName;
+      try {
+        fieldName = (String) field.get(null);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+      serializedFieldNames.put(fieldName, new SerializedString(fieldName));
+    }
+    return Collections.unmodifiableMap(serializedFieldNames);
+  }
+
+  /**
+   * The remaining elements of an array being written, with null field names
+   */
+  private static final class ArrayChildren implements Iterator<Map.Entry<String, JsonNode>> {
+
+    private final Iterator<JsonNode> elements;
+
+    ArrayChildren(@Nonnull Iterator<JsonNode> elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return elements.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, JsonNode> next() {
+      return JunkDrawer.entryOf(null, elements.next());
+    }
+
+  }
+
+}
@@ -1,7 +1,7 @@
 package com.saasquatch.jsonschemainferrer;
 
-import static com.saasquatch.jsonschemainferrer.JunkDrawer.getSerializedTextLength;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
+import javax.annotation.Nonnull;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -16,16 +16,9 @@ public enum StringLengthFeature implements GenericSchemaFeature {
    */
   MIN_LENGTH {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.STRING.equals(input.getType())) {
-        return null;
-      }
-      final ObjectNode result = newObject();
-     input.getSamples().stream()
-          .mapToInt(j -> getSerializedTextLength(j))
-          .min()
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      input.getStats().getMinTextLength()
           .ifPresent(minLength -> result.put(Consts.Fields.MIN_LENGTH, minLength));
-      return result;
     }
   },
 
@@ -34,18 +27,26 @@ public enum StringLengthFeature implements GenericSchemaFeature {
    */
   MAX_LENGTH {
     @Override
-    public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
-      if (!Consts.Types.STRING.equals(input.getType())) {
-        return null;
-      }
-      final ObjectNode result = newObject();
-      input.getSamples().stream()
-          .mapToInt(j -> getSerializedTextLength(j))
-          .max()
+    void addFeatureResult(GenericSchemaFeatureInput input, ObjectNode result) {
+      input.getStats().getMaxTextLength()
           .ifPresent(maxLength -> result.put(Consts.Fields.MAX_LENGTH, maxLength));
-      return result;
     }
   },;
 
+  @Override
+  public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
+    if (!Consts.Types.STRING.equals(input.getType())) {
+      return null;
+    }
+    final ObjectNode result = newObject();
+    addFeatureResult(input, result);
+    return result;
+  }
+
+  /**
+   * Add the result of this feature to the given result without checking the type. NOT PUBLIC.
+   */
+  abstract void addFeatureResult(@Nonnull GenericSchemaFeatureInput input,
+      @Nonnull ObjectNode result);
 
 }
@@ -0,0 +1,399 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.newObject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Extraction of the object schemas that show up multiple times in an inferred schema into
+ * {@code definitions}, which are then referred to with {@code $ref}. Draft-04 through draft-07 all
+ * use {@code definitions} and ignore the siblings of {@code $ref}, so every copy of a repeated
+ * subschema is replaced with a schema that only has the {@code $ref}.
+ * <p>
+ * The repeated subschemas are found with hash-consing, where every distinct subtree of the schema
+ * gets an id based on its own field names and the ids of its children, so finding the repeats
+ * takes a single pass over the schema. Explicit stacks are used instead of recursion, so deep
+ * schemas work as well. NOT PUBLIC.
+ *
+ * @author sli
+ * @see JsonSchemaInferrerBuilder#setSubschemaDefinitions(int)
+ */
+@Immutable
+final class SubschemaDefinitions {
+
+  // The roles of the JSONs within a schema
+  private static final int SCHEMA = 0, SCHEMA_MAP = 1, SCHEMA_ARRAY = 2, DATA = 3;
+
+  private final int minOccurrences;
+
+  SubschemaDefinitions(@Nonnegative int minOccurrences) {
+    this.minOccurrences = minOccurrences;
+  }
+
+  /**
+   * Extract the repeated object subschemas of the given schema into {@code definitions} in place
+   */
+  public void extract(@Nonnull ObjectNode schema) {
+    final Map<JsonNode, Integer> candidateIds = new IdentityHashMap<>();
+    final Map<Integer, Integer> occurrences = new HashMap<>();
+    assignIds(schema, candidateIds, occurrences);
+    if (occurrences.values().stream().noneMatch(count -> count >= minOccurrences)) {
+      return;
+    }
+    // The definitions in the order they are first seen, from the top down
+    final Map<Integer, Definition> definitionsById = new LinkedHashMap<>();
+    final Deque<Position> stack = new ArrayDeque<>();
+    pushChildren(stack, schema, SCHEMA, "schema");
+    while (!stack.isEmpty()) {
+      final Position position = stack.pop();
+      final Integer id = position.role == SCHEMA ? candidateIds.get(position.node) : null;
+      if (id == null || occurrences.get(id) < minOccurrences) {
+        pushChildren(stack, position.node, position.role, position.nameHint);
+        continue;
+      }
+      final ObjectNode ref = newObject();
+      position.replaceWith(ref);
+      Definition definition = definitionsById.get(id);
+      if (definition == null) {
+        definition = new Definition((ObjectNode) position.node, position.nameHint);
+        definitionsById.put(id, definition);
+        // Only the first copy is kept and looked into
+        pushChildren(stack, position.node, SCHEMA, position.nameHint);
+      }
+      definition.refs.add(ref);
+    }
+    /*
+     * Subschemas that only show up within other repeated subschemas end up with a single $ref, so
+     * they are put back in place. The names are decided afterwards so they have no gaps.
+     */
+    final JsonNode existingDefinitions = schema.get(Consts.Fields.DEFINITIONS);
+    final ObjectNode definitions = existingDefinitions instanceof ObjectNode
+        ? (ObjectNode) existingDefinitions : newObject();
+    for (Definition definition : definitionsById.values()) {
+      if (definition.refs.size() == 1) {
+        definition.refs.get(0).setAll(definition.schema);
+        continue;
+      }
+      final String name = getUniqueName(definitions, definition.nameHint);
+      definitions.set(name, definition.schema);
+      for (ObjectNode ref : definition.refs) {
+        ref.put(Consts.Fields.DOLLAR_REF, "#/" + Consts.Fields.DEFINITIONS + '/' + name);
+      }
+    }
+    if (definitions.size() > 0) {
+      schema.set(Consts.Fields.DEFINITIONS, definitions);
+    }
+  }
+
+  /**
+   * Assign an id to every subtree of the given schema in a single post-order pass, where equal
+   * subtrees get the same id. The ids of the object subschemas with {@code properties} and the
+   * number of times every id shows up are kept.
+   */
+  private static void assignIds(@Nonnull ObjectNode schema,
+      @Nonnull Map<JsonNode, Integer> candidateIds, @Nonnull Map<Integer, Integer> occurrences) {
+    final Map<Object, Integer> internedIds = new HashMap<>();
+    final Deque<IdFrame> stack = new ArrayDeque<>();
+    stack.push(new IdFrame(schema, SCHEMA));
+    while (true) {
+      final IdFrame frame = stack.peek();
+      if (frame.children.hasNext()) {
+        final Map.Entry<String, JsonNode> child = frame.children.next();
+        final JsonNode childNode = child.getValue();
+        if (childNode.isContainerNode()) {
+          frame.pendingFieldName = child.getKey();
+          stack.push(new IdFrame(childNode, getChildRole(frame.role, child.getKey())));
+        } else {
+          frame.addChild(child.getKey(), intern(internedIds, childNode));
+        }
+        continue;
+      }
+      stack.pop();
+      final int id = intern(internedIds, frame.toKey());
+      if (frame.role == SCHEMA && frame.node.path(Consts.Fields.PROPERTIES).isObject()) {
+        candidateIds.put(frame.node, id);
+        occurrences.merge(id, 1, Integer::sum);
+      }
+      final IdFrame parentFrame = stack.peek();
+      if (parentFrame == null) {
+        return;
+      }
+      parentFrame.addChild(parentFrame.pendingFieldName, id);
+    }
+  }
+
+  private static int intern(@Nonnull Map<Object, Integer> internedIds, @Nonnull Object key) {
+    final Integer existingId = internedIds.get(key);
+    if (existingId != null) {
+      return existingId;
+    }
+    final int id = internedIds.size();
+    internedIds.put(key, id);
+    return id;
+  }
+
+  /**
+   * @param parentRole the role of the parent
+   * @param fieldName the field name of the child, or null for array elements
+   * @return The role of a child
+   */
+  private static int getChildRole(int parentRole, @Nullable String fieldName) {
+    switch (parentRole) {
+      case SCHEMA_MAP:
+      case SCHEMA_ARRAY:
+        return SCHEMA;
+      case SCHEMA:
+        if (fieldName == null) {
+          return DATA;
+        }
+        switch (fieldName) {
+          case Consts.Fields.PROPERTIES:
+          case Consts.Fields.DEFINITIONS:
+            return SCHEMA_MAP;
+          case Consts.Fields.ANY_OF:
+            return SCHEMA_ARRAY;
+          case Consts.Fields.ITEMS:
+          case Consts.Fields.ADDITIONAL_PROPERTIES:
+            return SCHEMA;
+          default:
+            return DATA;
+        }
+      default:
+        return DATA;
+    }
+  }
+
+  private static void pushChildren(@Nonnull Deque<Position> stack, @Nonnull JsonNode node,
+      int role, @Nonnull String nameHint) {
+    if (role == DATA) {
+      // No schemas in here
+      return;
+    }
+    // Pushed in reverse, so the children are looked into in order
+    final List<Position> children = new ArrayList<>();
+    if (node.isObject()) {
+      final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        final Map.Entry<String, JsonNode> field = fields.next();
+        final int childRole = getChildRole(role, field.getKey());
+        if (childRole == SCHEMA && !field.getValue().isObject()) {
+          // e.g. boolean additionalProperties
+          continue;
+        }
+        final String childNameHint;
+        if (role == SCHEMA_MAP) {
+          childNameHint = field.getKey();
+        } else if (Consts.Fields.ITEMS.equals(field.getKey())) {
+          childNameHint = nameHint + "Item";
+        } else {
+          childNameHint = nameHint;
+        }
+        children.add(new Position(field.getValue(), childRole, node, field.getKey(), -1,
+            childNameHint));
+      }
+    } else if (node.isArray()) {
+      for (int i = 0; i < node.size(); i++) {
+        final int childRole = getChildRole(role, null);
+        if (childRole == SCHEMA && !node.get(i).isObject()) {
+          continue;
+        }
+        children.add(new Position(node.get(i), childRole, node, null, i, nameHint));
+      }
+    }
+    for (int i = children.size() - 1; i >= 0; i--) {
+      stack.push(children.get(i));
+    }
+  }
+
+  /**
+   * @return A name based on the given hint that is safe to use in a JSON pointer within a URI
+   *         fragment, and that is not already used by the given definitions
+   */
+  @Nonnull
+  private static String getUniqueName(@Nonnull ObjectNode definitions, @Nonnull String nameHint) {
+    final StringBuilder sb = new StringBuilder(nameHint.length());
+    for (int i = 0; i < nameHint.length(); i++) {
+      final char c = nameHint.charAt(i);
+      final boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+          || (c >= '0' && c <= '9') || c == '_' || c == '-' || c == '.';
+      sb.append(safe ? c : '_');
+    }
+    final String name = sb.length() == 0 ? "schema" : sb.toString();
+    if (!definitions.has(name)) {
+      return name;
+    }
+    for (int suffix = 2;; suffix++) {
+      final String suffixedName = name + suffix;
+      if (!definitions.has(suffixedName)) {
+        return suffixedName;
+      }
+    }
+  }
+
+  /**
+   * A container whose id is being computed. The children of arrays have null field names.
+   */
+  private static final class IdFrame {
+
+    final JsonNode node;
+    final int role;
+    final Iterator<Map.Entry<String, JsonNode>> children;
+    final List<String> fieldNames = new ArrayList<>();
+    final List<Integer> childIds = new ArrayList<>();
+    String pendingFieldName;
+
+    IdFrame(@Nonnull JsonNode node, int role) {
+      this.node = node;
+      this.role = role;
+      if (node.isObject()) {
+        this.children = node.fields();
+      } else {
+        final Iterator<JsonNode> elements = node.elements();
+        this.children = new Iterator<Map.Entry<String, JsonNode>>() {
+
+          @Override
+          public boolean hasNext() {
+            return elements.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, JsonNode> next() {
+            return JunkDrawer.entryOf(null, elements.next());
+          }
+
+        };
+      }
+    }
+
+    void addChild(@Nullable String fieldName, int childId) {
+      fieldNames.add(fieldName);
+      childIds.add(childId);
+    }
+
+    /**
+     * @return The key of the container for interning, where the order of the fields of objects
+     *         does not matter, just like {@link ObjectNode#equals(Object)}
+     */
+    @Nonnull
+    Object toKey() {
+      if (!node.isObject()) {
+        return new ContainerKey(null, childIds.stream().mapToInt(Integer::intValue).toArray());
+      }
+      final Integer[] order = new Integer[fieldNames.size()];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparing(fieldNames::get));
+      final String[] sortedFieldNames = new String[order.length];
+      final int[] sortedChildIds = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        sortedFieldNames[i] = fieldNames.get(order[i]);
+        sortedChildIds[i] = childIds.get(order[i]);
+      }
+      return new ContainerKey(sortedFieldNames, sortedChildIds);
+    }
+
+  }
+
+  /**
+   * The interning key of an object or an array
+   */
+  private static final class ContainerKey {
+
+    // Null for arrays
+    @Nullable
+    final String[] fieldNames;
+    final int[] childIds;
+
+    ContainerKey(@Nullable String[] fieldNames, @Nonnull int[] childIds) {
+      this.fieldNames = fieldNames;
+      this.childIds = childIds;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(fieldNames) + Arrays.hashCode(childIds);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ContainerKey)) {
+        return false;
+      }
+      final ContainerKey other = (ContainerKey) obj;
+      return Arrays.equals(fieldNames, other.fieldNames) && Arrays.equals(childIds, other.childIds);
+    }
+
+  }
+
+  /**
+   * A JSON within the schema that is yet to be looked into, along with where it is
+   */
+  private static final class Position {
+
+    final JsonNode node;
+    final int role;
+    final JsonNode parent;
+    // Only for children of objects
+    @Nullable
+    final String fieldName;
+    // Only for children of arrays
+    final int index;
+    final String nameHint;
+
+    Position(@Nonnull JsonNode node, int role, @Nonnull JsonNode parent,
+        @Nullable String fieldName, int index, @Nonnull String nameHint) {
+      this.node = node;
+      this.role = role;
+      this.parent = parent;
+      this.fieldName = fieldName;
+      this.index = index;
+      this.nameHint = nameHint;
+    }
+
+    void replaceWith(@Nonnull JsonNode replacement) {
+      if (fieldName != null) {
+        ((ObjectNode) parent).set(fieldName, replacement);
+      } else {
+        ((ArrayNode) parent).set(index, replacement);
+      }
+    }
+
+  }
+
+  /**
+   * A repeated subschema and the {@code $ref}s to it
+   */
+  private static final class Definition {
+
+    final ObjectNode schema;
+    final String nameHint;
+    final List<ObjectNode> refs = new ArrayList<>();
+
+    Definition(@Nonnull ObjectNode schema, @Nonnull String nameHint) {
+      this.schema = schema;
+      this.nameHint = nameHint;
+    }
+
+  }
+
+}
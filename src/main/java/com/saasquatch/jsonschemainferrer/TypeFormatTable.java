@@ -0,0 +1,113 @@
+package com.saasquatch.jsonschemainferrer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compact table keyed by combinations of {@code type} and {@code format}. There are usually only a
+ * handful of distinct combinations for the primitives at a single path, so the entries are kept in
+ * small arrays and looked up with a linear scan, which avoids allocating a key for every sample.
+ * The types are the constants in {@link Consts.Types} and the formats usually come from constants
+ * as well, so the keys are compared by identity before falling back to {@link String#equals}. The
+ * entries are kept in the order they are first added. NOT PUBLIC.
+ *
+ * @author sli
+ */
+@NotThreadSafe
+final class TypeFormatTable<V> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private String[] types = new String[INITIAL_CAPACITY];
+  private String[] formats = new String[INITIAL_CAPACITY];
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private int size;
+
+  TypeFormatTable() {}
+
+  /**
+   * @return The value for the given type and format, or a new value from the given
+   *         {@link Supplier} if the combination has not been added yet
+   */
+  @Nonnull
+  public V computeIfAbsent(@Nonnull String type, @Nullable String format,
+      @Nonnull Supplier<? extends V> valueSupplier) {
+    final int index = indexOf(type, format);
+    if (index >= 0) {
+      return getValue(index);
+    }
+    if (size == types.length) {
+      final int newCapacity = size * 2;
+      types = Arrays.copyOf(types, newCapacity);
+      formats = Arrays.copyOf(formats, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+    final V value = Objects.requireNonNull(valueSupplier.get());
+    types[size] = Objects.requireNonNull(type);
+    formats[size] = format;
+    values[size] = value;
+    size++;
+    return value;
+  }
+
+  /**
+   * @return The value for the given type and format, or null if the combination has not been
+   *         added
+   */
+  @Nullable
+  public V get(@Nonnull String type, @Nullable String format) {
+    final int index = indexOf(type, format);
+    return index < 0 ? null : getValue(index);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  @Nonnull
+  public String getType(@Nonnegative int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  @Nullable
+  public String getFormat(@Nonnegative int index) {
+    checkIndex(index);
+    return formats[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nonnull
+  public V getValue(@Nonnegative int index) {
+    checkIndex(index);
+    return (V) values[index];
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private int indexOf(@Nonnull String type, @Nullable String format) {
+    for (int i = 0; i < size; i++) {
+      if (stringEquals(types[i], type) && stringEquals(formats[i], format)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean stringEquals(@Nullable String a, @Nullable String b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+}
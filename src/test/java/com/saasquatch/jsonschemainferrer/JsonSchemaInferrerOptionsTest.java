@@ -5,6 +5,7 @@ import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.jnf;
 import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.toStringSet;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -13,16 +14,31 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.Month;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -31,6 +47,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 
 public class JsonSchemaInferrerOptionsTest {
 
@@ -148,6 +165,326 @@ public class JsonSchemaInferrerOptionsTest {
     }
   }
 
+  @Test
+  public void testDateTimeFormatInferrer() {
+    final List<String> validStrings = ImmutableList.of("2020-01-01", "+12020-01-01", "-0001-12-31",
+        "2020-02-30", "2020-01-01T10:15", "2020-01-01T10:15Z", "2020-01-01t10:15:30z",
+        "2020-01-01T10:15:30.123456789+01:00", "2020-01-01T10:15:30+01", "2020-01-01T10:15:30-0130",
+        "2020-01-01T10:15:30+01:00[Europe/Paris]", "2020-01-01T10:15:30Z[UTC]", "10:15", "10:15:30",
+        "10:15:30.", "10:15:30.1", "23:59:59.999999999", "10:15Z", "10:15:30+01:00", "10:15+01",
+        "24:00", "10:15:30+18:00:00", Instant.now().toString());
+    final String alphabet = "0123456789-:+.TZtz[]/ aE";
+    final Random random = new Random(42);
+    final List<String> strings = new ArrayList<>(validStrings);
+    for (String validString : validStrings) {
+      for (int i = 0; i < 300; i++) {
+        final StringBuilder sb = new StringBuilder(validString);
+        final int index = random.nextInt(sb.length());
+        final char c = alphabet.charAt(random.nextInt(alphabet.length()));
+        switch (random.nextInt(3)) {
+          case 0:
+            sb.setCharAt(index, c);
+            break;
+          case 1:
+            sb.deleteCharAt(index);
+            break;
+          default:
+            sb.insert(index, c);
+            break;
+        }
+        strings.add(sb.toString());
+      }
+    }
+    for (SpecVersion specVersion : SpecVersion.values()) {
+      for (String string : strings) {
+        final FormatInferrerInput input =
+            new FormatInferrerInput(jnf.textNode(string), specVersion);
+        assertEquals(referenceDateTimeFormat(string, specVersion),
+            FormatInferrers.dateTime().inferFormat(input), string);
+      }
+    }
+  }
+
+  @Test
+  public void testFastAllFormatInferrer() {
+    final FormatInferrer chained = FormatInferrers.chained(FormatInferrers.dateTime(),
+        FormatInferrers.email(), FormatInferrers.ip());
+    final List<JsonNode> samples = ImmutableList.of(jnf.textNode("foo"), jnf.textNode(""),
+        jnf.textNode("foo@bar.com"), jnf.textNode("foo@bar"), jnf.textNode("@"),
+        jnf.textNode("a.b@c.d.com."), jnf.textNode("1.2.3.4"), jnf.textNode("255.255.255.255"),
+        jnf.textNode("256.1.1.1"), jnf.textNode("1.2.3"), jnf.textNode("1.2.3.4.5"),
+        jnf.textNode("::"), jnf.textNode("::1"), jnf.textNode("fe80::1%eth0"),
+        jnf.textNode("2001:db8::ff00:42:8329"), jnf.textNode("::ffff:1.2.3.4"),
+        jnf.textNode("1:2:3:4:5:6:7:8:9"), jnf.textNode("10:15"), jnf.textNode("10:15:30"),
+        jnf.textNode("2020-01-01"), jnf.textNode("2020-01-01T10:15:30Z"),
+        jnf.textNode(Instant.now().toString()), jnf.textNode("a@b:c"), jnf.numberNode(1),
+        jnf.booleanNode(true), jnf.nullNode());
+    for (SpecVersion specVersion : SpecVersion.values()) {
+      for (JsonNode sample : samples) {
+        final FormatInferrerInput input = new FormatInferrerInput(sample, specVersion);
+        assertEquals(chained.inferFormat(input), FormatInferrers.fastAll().inferFormat(input),
+            sample.toString());
+      }
+    }
+    assertEquals("ipv4",
+        JsonSchemaInferrer.newBuilder().addFormatInferrers(FormatInferrers.fastAll()).build()
+            .inferForSample(jnf.textNode("1.2.3.4")).path("format").textValue());
+  }
+
+  @Test
+  public void testCachedFormatInferrer() throws Exception {
+    assertThrows(NullPointerException.class, () -> FormatInferrers.cached(null, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> FormatInferrers.cached(FormatInferrers.email(), 0));
+    final CountingFormatInferrer counting = new CountingFormatInferrer();
+    final CachingFormatInferrer cached = FormatInferrers.cached(counting, 2);
+    final FormatInferrerInput email =
+        new FormatInferrerInput(jnf.textNode("foo@bar.com"), SpecVersion.DRAFT_07);
+    final FormatInferrerInput nonEmail =
+        new FormatInferrerInput(jnf.textNode("foo"), SpecVersion.DRAFT_07);
+    assertEquals("email", cached.inferFormat(email));
+    assertEquals("email", cached.inferFormat(email));
+    assertNull(cached.inferFormat(nonEmail));
+    assertNull(cached.inferFormat(nonEmail));
+    assertEquals(2, cached.getHitCount());
+    assertEquals(2, cached.getMissCount());
+    assertEquals(2, counting.calls.sum());
+    // Different spec versions are cached separately
+    assertEquals("email",
+        cached.inferFormat(new FormatInferrerInput(jnf.textNode("foo@bar.com"),
+            SpecVersion.DRAFT_06)));
+    assertEquals(3, cached.getMissCount());
+    // Bounded by size
+    assertEquals(2, cached.size());
+    // Non-textual samples bypass the cache
+    assertNull(
+        cached.inferFormat(new FormatInferrerInput(jnf.numberNode(1), SpecVersion.DRAFT_07)));
+    assertEquals(2, cached.getHitCount());
+    assertEquals(3, cached.getMissCount());
+    // Shared across threads
+    final CachingFormatInferrer sharedCache =
+        FormatInferrers.cached(FormatInferrers.fastAll(), 100);
+    final JsonSchemaInferrer inferrer =
+        JsonSchemaInferrer.newBuilder().addFormatInferrers(sharedCache).build();
+    final List<JsonNode> samples = IntStream.range(0, 1000)
+        .mapToObj(i -> jnf.textNode(i % 2 == 0 ? "1.2.3." + (i % 10) : "a" + (i % 7) + "@b.com"))
+        .collect(Collectors.toList());
+    final ObjectNode expected = JsonSchemaInferrer.newBuilder()
+        .addFormatInferrers(FormatInferrers.fastAll()).build().inferForSamples(samples);
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final List<ObjectNode> results = pool.submit(() -> IntStream.range(0, 8).parallel()
+          .mapToObj(i -> inferrer.inferForSamples(samples)).collect(Collectors.toList())).get();
+      for (ObjectNode result : results) {
+        assertEquals(expected, result);
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(12, sharedCache.size());
+    assertEquals(8000, sharedCache.getHitCount() + sharedCache.getMissCount());
+    assertTrue(sharedCache.getHitCount() >= 8000 - 12 * 8);
+  }
+
+  @Test
+  public void testAdaptiveFormatInference() {
+    assertThrows(IllegalArgumentException.class,
+        () -> JsonSchemaInferrer.newBuilder().setAdaptiveFormatInference(0));
+    final CountingFormatInferrer email = new CountingFormatInferrer();
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .addFormatInferrers(FormatInferrers.dateTime(), email)
+        .setAdaptiveFormatInference(5)
+        .build();
+    final List<JsonNode> samples = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      samples.add(jnf.objectNode().put("plain", "foo" + i).put("time", Instant.now().toString())
+          .put("mixed", i % 2 == 0 ? "a@b.com" : Instant.now().toString()));
+    }
+    final ObjectNode schema = inferrer.inferForSamples(samples);
+    /*
+     * The email inferrer is called for the 5 warm-up samples at plain, never at time since it is
+     * locked onto date time, and for the 5 emails at mixed
+     */
+    assertEquals(5 + 0 + 5, email.calls.sum());
+    final ObjectNode nonAdaptiveSchema = JsonSchemaInferrer.newBuilder()
+        .addFormatInferrers(FormatInferrers.dateTime(), FormatInferrers.email()).build()
+        .inferForSamples(samples);
+    assertEquals(nonAdaptiveSchema, schema);
+    // A late date time at a formatless path is missed, but a late email at a locked path is not
+    samples.add(jnf.objectNode().put("plain", Instant.now().toString()).put("time", "a@b.com"));
+    final ObjectNode lateSchema = inferrer.inferForSamples(samples);
+    assertEquals(ImmutableSet.of(), ImmutableSet
+        .copyOf(lateSchema.path("properties").path("plain").findValuesAsText("format")));
+    assertEquals(ImmutableSet.of("date-time", "email"), ImmutableSet
+        .copyOf(lateSchema.path("properties").path("time").findValuesAsText("format")));
+    // The streaming path behaves the same
+    final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+    samples.forEach(accumulator::add);
+    assertEquals(lateSchema, accumulator.toSchema());
+  }
+
+  @Test
+  public void testValueInspectionLimit() {
+    assertThrows(IllegalArgumentException.class,
+        () -> JsonSchemaInferrer.newBuilder().setValueInspectionLimit(0, 1));
+    {
+      final CountingFormatInferrer formatInferrer = new CountingFormatInferrer();
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .addFormatInferrers(formatInferrer).setValueInspectionLimit(5, 1).build();
+      final List<JsonNode> emails = new ArrayList<>();
+      final List<JsonNode> mixed = new ArrayList<>();
+      final List<JsonNode> samples = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        emails.add(jnf.textNode("foo" + i + "@example.com"));
+        mixed.add(jnf.textNode(i % 2 == 0 ? "bar@example.com" : "bar"));
+        samples.add(jnf.objectNode().<ObjectNode>set("email", emails.get(i))
+            .<ObjectNode>set("mixed", mixed.get(i)).put("number", i));
+      }
+      final ObjectNode schema = inferrer.inferForSamples(samples);
+      // The emails are all checked, but the other paths stop after 5 values
+      assertEquals(110, formatInferrer.calls.sum());
+      final JsonNode properties = schema.path("properties");
+      assertEquals("email", properties.path("email").path("format").textValue());
+      assertNull(properties.path("number").get("format"));
+      assertFormatsChecked(properties.path("email"), emails, FormatInferrers.email());
+      // The inspected values did not agree, so only the inspected emails get the format
+      assertEquals(2, properties.path("mixed").path("anyOf").size());
+      assertFormatsChecked(properties.path("mixed"), mixed, FormatInferrers.email());
+    }
+    {
+      final JsonSchemaInferrer noLimitInferrer = JsonSchemaInferrer.newBuilder()
+          .addFormatInferrers(FormatInferrers.dateTime()).build();
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .addFormatInferrers(FormatInferrers.dateTime()).setValueInspectionLimit(5, 1).build();
+      // Values that only look like dates at the start
+      final List<JsonNode> samples = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        samples.add(jnf.textNode(i < 5 ? "2020-01-01T00:00:00Z" : "Free text " + i));
+      }
+      assertEquals(noLimitInferrer.inferForSamples(samples), inferrer.inferForSamples(samples));
+      assertFormatsChecked(inferrer.inferForSamples(samples), samples, FormatInferrers.dateTime());
+      // A lot of numbers before the strings do not use up the limit for the strings
+      samples.clear();
+      for (int i = 0; i < 100; i++) {
+        samples.add(jnf.numberNode(i));
+      }
+      for (int i = 0; i < 10; i++) {
+        samples.add(jnf.textNode("2020-01-01T00:00:00Z"));
+      }
+      final ObjectNode schema = inferrer.inferForSamples(samples);
+      assertEquals(ImmutableSet.of("date-time"),
+          ImmutableSet.copyOf(schema.findValuesAsText("format")));
+      final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+      samples.forEach(accumulator::add);
+      assertEquals(schema, accumulator.toSchema());
+    }
+    {
+      final JsonSchemaInferrer noLimitInferrer = JsonSchemaInferrer.newBuilder()
+          .addFormatInferrers(FormatInferrers.dateTime()).build();
+      // A single odd value after the limit
+      final List<JsonNode> samples = new ArrayList<>();
+      for (int i = 0; i < 999; i++) {
+        samples.add(jnf.textNode("2020-01-01T00:00:00Z"));
+      }
+      samples.add(jnf.textNode("not a date"));
+      final ObjectNode expected = noLimitInferrer.inferForSamples(samples);
+      assertEquals(2, expected.path("anyOf").size());
+      for (int maxValues : new int[] {50, 5000}) {
+        final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+            .addFormatInferrers(FormatInferrers.dateTime()).setValueInspectionLimit(maxValues, 1)
+            .build();
+        final ObjectNode schema = inferrer.inferForSamples(samples);
+        assertEquals(expected, schema);
+        assertFormatsChecked(schema, samples, FormatInferrers.dateTime());
+        final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+        samples.forEach(accumulator::add);
+        assertEquals(schema, accumulator.toSchema());
+      }
+    }
+    {
+      final AtomicInteger maxSampleCount = new AtomicInteger();
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .addEnumExtractors(input -> {
+            maxSampleCount.accumulateAndGet(input.getSamples().size(), Math::max);
+            return EnumExtractors.validEnum(DayOfWeek.class).extractEnums(input);
+          })
+          .setValueInspectionLimit(50, 1).build();
+      final List<JsonNode> samples = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        samples.add(jnf.textNode(DayOfWeek.of(i % 7 + 1).name()));
+      }
+      samples.add(jnf.textNode("foo"));
+      final ObjectNode schema = inferrer.inferForSamples(samples);
+      assertEquals(50, maxSampleCount.get());
+      assertEquals(2, schema.path("anyOf").size());
+      assertEquals(7, schema.findValue("enum").size());
+      assertEquals(ImmutableSet.of("string"), ImmutableSet.copyOf(schema.findValuesAsText("type")));
+    }
+  }
+
+  /**
+   * Assert that every string sample matches a schema in the given schema or its anyOf that either
+   * has no format or has the format the given {@link FormatInferrer} infers for the sample
+   */
+  private static void assertFormatsChecked(JsonNode schema, List<JsonNode> samples,
+      FormatInferrer formatInferrer) {
+    final List<JsonNode> schemas = schema.has("anyOf")
+        ? ImmutableList.copyOf(schema.path("anyOf")) : ImmutableList.of(schema);
+    for (JsonNode sample : samples) {
+      final String format =
+          formatInferrer.inferFormat(new FormatInferrerInput(sample, SpecVersion.DRAFT_04));
+      assertTrue(schemas.stream()
+          .filter(s -> "string".equals(s.path("type").textValue()))
+          .anyMatch(s -> !s.has("format") || s.path("format").textValue().equals(format)),
+          sample + " does not match " + schema);
+    }
+  }
+
+  private static final class CountingFormatInferrer implements FormatInferrer {
+
+    final LongAdder calls = new LongAdder();
+
+    @Override
+    public String inferFormat(FormatInferrerInput input) {
+      calls.increment();
+      return FormatInferrers.email().inferFormat(input);
+    }
+
+  }
+
+  /**
+   * The date time format inference implemented with java.time only
+   */
+  private static String referenceDateTimeFormat(String textValue, SpecVersion specVersion) {
+    try {
+      ZonedDateTime.parse(textValue);
+      return "date-time";
+    } catch (DateTimeParseException e) {
+      // Ignore
+    }
+    if (specVersion.compareTo(SpecVersion.DRAFT_07) >= 0) {
+      try {
+        LocalDate.parse(textValue);
+        return "date";
+      } catch (DateTimeParseException e) {
+        // Ignore
+      }
+      try {
+        LocalTime.parse(textValue);
+        return "time";
+      } catch (DateTimeParseException e) {
+        // Ignore
+      }
+      try {
+        OffsetTime.parse(textValue);
+        return "time";
+      } catch (DateTimeParseException e) {
+        // Ignore
+      }
+    }
+    return null;
+  }
+
   @Test
   public void testAdditionalProperties() {
     {
@@ -228,6 +565,24 @@ public class JsonSchemaInferrerOptionsTest {
     }
   }
 
+  @Test
+  public void testRequiredOrder() {
+    final List<ObjectNode> samples = ImmutableList.of(
+        jnf.objectNode().put("z", 1).put("y", 1).put("x", 1).put("w", 1),
+        jnf.objectNode().put("w", 2).put("v", 2).put("x", 2).putNull("y").put("z", 2));
+    final JsonSchemaInferrer inferrer =
+        JsonSchemaInferrer.newBuilder().setRequiredPolicy(RequiredPolicies.commonFields()).build();
+    final ObjectNode schema = inferrer.inferForSamples(samples);
+    assertEquals(jnf.arrayNode().add("z").add("y").add("x").add("w"), schema.get("required"));
+    final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+    samples.forEach(accumulator::add);
+    assertEquals(schema, accumulator.toSchema());
+    final JsonSchemaInferrer nonNullInferrer = JsonSchemaInferrer.newBuilder()
+        .setRequiredPolicy(RequiredPolicies.nonNullCommonFields()).build();
+    assertEquals(jnf.arrayNode().add("z").add("x").add("w"),
+        nonNullInferrer.inferForSamples(samples).get("required"));
+  }
+
   @Test
   public void testRequired() {
     final List<ObjectNode> samples = ImmutableList.of(jnf.objectNode().put("1", 1).put("2", 2),
@@ -358,6 +713,13 @@ public class JsonSchemaInferrerOptionsTest {
           .setDefaultPolicy(DefaultPolicies.useLastSamples()).build();
       assertEquals("c", inferrer.inferForSamples(samples).path("default").textValue());
     }
+    {
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .setDefaultPolicy(DefaultPolicies.useRandomSamples(42)).build();
+      final JsonNode defaultNode = inferrer.inferForSamples(samples).path("default");
+      assertTrue(samples.contains(defaultNode));
+      assertEquals(defaultNode, inferrer.inferForSamples(samples).path("default"));
+    }
   }
 
   @Test
@@ -422,6 +784,114 @@ public class JsonSchemaInferrerOptionsTest {
     }
   }
 
+  @Test
+  public void testBoundedExamples() {
+    assertSame(ExamplesPolicies.noOp(), ExamplesPolicies.useLastSamples(0));
+    assertSame(ExamplesPolicies.noOp(), ExamplesPolicies.useRandomSamples(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> ExamplesPolicies.useLastSamples(-1));
+    assertThrows(IllegalArgumentException.class, () -> ExamplesPolicies.useRandomSamples(-1, 1));
+    final List<JsonNode> samples = IntStream.range(0, 100).map(i -> i % 20)
+        .mapToObj(Integer::toString).map(jnf::textNode).collect(Collectors.toList());
+    {
+      final JsonSchemaInferrer inferrer =
+          JsonSchemaInferrer.newBuilder().setSpecVersion(SpecVersion.DRAFT_06)
+              .setExamplesPolicy(ExamplesPolicies.useLastSamples(3)).build();
+      assertEquals(ImmutableList.of("17", "18", "19"), stream(inferrer.inferForSamples(samples)
+          .path("examples")).map(JsonNode::textValue).collect(Collectors.toList()));
+    }
+    {
+      final JsonSchemaInferrer inferrer =
+          JsonSchemaInferrer.newBuilder().setSpecVersion(SpecVersion.DRAFT_06)
+              .setExamplesPolicy(ExamplesPolicies.useRandomSamples(5, 42)).build();
+      final JsonNode examples = inferrer.inferForSamples(samples).path("examples");
+      assertEquals(5, examples.size());
+      stream(examples).forEach(example -> assertTrue(samples.contains(example)));
+      assertEquals(examples, inferrer.inferForSamples(samples).path("examples"));
+      assertEquals(samples.subList(0, 3), ImmutableList.copyOf(inferrer
+          .inferForSamples(samples.subList(0, 3)).path("examples")));
+    }
+    {
+      // The first distinct samples stop reading the samples once the limit is reached
+      final AtomicInteger readCount = new AtomicInteger();
+      final Collection<JsonNode> countingSamples = new AbstractCollection<JsonNode>() {
+        @Override
+        public Iterator<JsonNode> iterator() {
+          final Iterator<JsonNode> iterator = samples.iterator();
+          return new Iterator<JsonNode>() {
+            @Override
+            public boolean hasNext() {
+              return iterator.hasNext();
+            }
+
+            @Override
+            public JsonNode next() {
+              readCount.incrementAndGet();
+              return iterator.next();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return samples.size();
+        }
+      };
+      final JsonNode examples = ExamplesPolicies.useFirstSamples(3).getExamples(
+          new GenericSchemaFeatureInput(jnf.objectNode(), countingSamples, "string",
+              SpecVersion.DRAFT_07));
+      assertEquals(ImmutableSet.of("0", "1", "2"), toStringSet(examples));
+      assertEquals(3, readCount.get());
+    }
+  }
+
+  @Test
+  public void testDocumentSampling() {
+    assertThrows(IllegalArgumentException.class, () -> DocumentSampling.fraction(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> DocumentSampling.fraction(1.5, 1));
+    assertThrows(IllegalArgumentException.class, () -> DocumentSampling.fraction(Double.NaN, 1));
+    assertThrows(IllegalArgumentException.class, () -> DocumentSampling.fixedSize(0, 1));
+    assertSame(DocumentSampling.none(), DocumentSampling.fraction(1, 1));
+    assertSame(DocumentSampling.none(), DocumentSampling.none().stratifiedByType());
+    final List<JsonNode> samples = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      samples.add(jnf.objectNode().put("a", i));
+    }
+    samples.add(jnf.textNode("foo"));
+    {
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .setSpecVersion(SpecVersion.DRAFT_07)
+          .setDefaultPolicy(DefaultPolicies.useFirstSamples())
+          .setDocumentSampling(DocumentSampling.fixedSize(10, 42)).build();
+      final ObjectNode schema = inferrer.inferForSamples(samples);
+      assertEquals("Inferred from a sample of 10 out of 1001 JSONs",
+          schema.path("$comment").textValue());
+      assertEquals(schema, inferrer.inferForSamples(samples));
+      assertNull(inferrer.inferForSamples(samples.subList(0, 10)).get("$comment"));
+    }
+    {
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .setSpecVersion(SpecVersion.DRAFT_07)
+          .setDocumentSampling(DocumentSampling.fraction(0.01, 42).stratifiedByType()).build();
+      final ObjectNode schema = inferrer.inferForSamples(samples);
+      assertEquals("Inferred from a sample of 10 out of 1000 object JSONs",
+          schema.path("$comment").textValue());
+      // The rare string is still represented
+      assertEquals(ImmutableSet.of("object", "integer", "string"),
+          ImmutableSet.copyOf(schema.findValuesAsText("type")));
+    }
+    {
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .setDocumentSampling(DocumentSampling.fixedSize(10, 42)).build();
+      final ObjectNode schema = inferrer.inferForSamples(samples);
+      // No $comment before draft-07
+      assertNull(schema.get("$comment"));
+      assertEquals("Inferred from a sample of 10 out of 1001 JSONs",
+          schema.path("description").textValue());
+      assertEquals(ImmutableSet.of("object", "integer"),
+          ImmutableSet.copyOf(schema.findValuesAsText("type")));
+    }
+  }
+
   @Test
   public void testMultipleOf() {
     final List<JsonNode> samples =
@@ -487,6 +957,138 @@ public class JsonSchemaInferrerOptionsTest {
     }
   }
 
+  @Test
+  public void testGenericSchemaFeaturePlan() {
+    final RequiredPolicy overriddenRequiredPolicy = new RequiredPolicy() {
+      @Override
+      public JsonNode getRequired(GenericSchemaFeatureInput input) {
+        return jnf.arrayNode().add("foo");
+      }
+
+      @Override
+      public ObjectNode getFeatureResult(GenericSchemaFeatureInput input) {
+        // Ignore the type
+        return jnf.objectNode().set("required", getRequired(input));
+      }
+    };
+    final List<GenericSchemaFeature> features = new ArrayList<>();
+    features.add(AdditionalPropertiesPolicies.existingTypes());
+    features.add(RequiredPolicies.commonFields());
+    features.add(DefaultPolicies.useFirstSamples());
+    features.add(ExamplesPolicies.useFirstSamples(2));
+    features.add(MultipleOfPolicies.gcd());
+    features.addAll(EnumSet.allOf(ObjectSizeFeature.class));
+    features.addAll(EnumSet.allOf(ArrayLengthFeature.class));
+    features.addAll(EnumSet.allOf(StringLengthFeature.class));
+    features.addAll(EnumSet.allOf(NumberRangeFeature.class));
+    features.add(overriddenRequiredPolicy);
+    features.add(input -> jnf.objectNode().put("type2", String.valueOf(input.getType())));
+    final GenericSchemaFeaturePlan plan = new GenericSchemaFeaturePlan(features);
+    final GenericSchemaFeature chained =
+        GenericSchemaFeatures.chained(features.toArray(new GenericSchemaFeature[0]));
+    final List<List<JsonNode>> samplesList = ImmutableList.of(
+        ImmutableList.of(jnf.objectNode().put("a", 1), jnf.objectNode().put("a", 2).put("b", 3)),
+        ImmutableList.of(jnf.arrayNode(), jnf.arrayNode().add(1)),
+        ImmutableList.of(jnf.textNode("foo"), jnf.textNode("")),
+        ImmutableList.of(jnf.numberNode(4), jnf.numberNode(6)),
+        ImmutableList.of(jnf.numberNode(1.5)), ImmutableList.of(jnf.booleanNode(true)),
+        ImmutableList.of(jnf.nullNode()));
+    final List<String> types = Arrays.asList(null, "object", "array", "string", "number",
+        "integer", "boolean", "null", "foo");
+    for (List<JsonNode> samples : samplesList) {
+      for (String type : types) {
+        final ObjectNode schema = jnf.objectNode().put("type", type);
+        assertEquals(
+            chained.getFeatureResult(
+                new GenericSchemaFeatureInput(schema, samples, type, SpecVersion.DRAFT_07)),
+            plan.getFeatureResult(
+                new GenericSchemaFeatureInput(schema, samples, type, SpecVersion.DRAFT_07)),
+            samples + " " + type);
+      }
+    }
+    final GenericSchemaFeaturePlan emptyPlan =
+        new GenericSchemaFeaturePlan(ImmutableList.of(StringLengthFeature.MIN_LENGTH));
+    assertTrue(emptyPlan.hasSteps("string"));
+    assertFalse(emptyPlan.hasSteps("object"));
+    assertFalse(emptyPlan.hasSteps(null));
+  }
+
+  @Test
+  public void testSinglePassStats() {
+    final List<GenericSchemaFeature> features = new ArrayList<>();
+    features.addAll(EnumSet.allOf(StringLengthFeature.class));
+    features.addAll(EnumSet.allOf(NumberRangeFeature.class));
+    features.addAll(EnumSet.allOf(ArrayLengthFeature.class));
+    features.addAll(EnumSet.allOf(ObjectSizeFeature.class));
+    final List<JsonNode> samples = ImmutableList.of(jnf.textNode("foo"),
+        jnf.textNode("\uD83D\uDE00"), jnf.numberNode(2), jnf.numberNode(-1.5),
+        jnf.arrayNode().add(1), jnf.objectNode());
+    final AtomicInteger iterations = new AtomicInteger();
+    final Collection<JsonNode> countingSamples = new AbstractCollection<JsonNode>() {
+      @Override
+      public Iterator<JsonNode> iterator() {
+        iterations.incrementAndGet();
+        return samples.iterator();
+      }
+
+      @Override
+      public int size() {
+        return samples.size();
+      }
+    };
+    for (String type : ImmutableList.of("string", "number", "array", "object")) {
+      iterations.set(0);
+      final GenericSchemaFeatureInput input = new GenericSchemaFeatureInput(jnf.objectNode(),
+          countingSamples, type, SpecVersion.DRAFT_07);
+      for (GenericSchemaFeature feature : features) {
+        feature.getFeatureResult(input);
+      }
+      assertEquals(1, iterations.get());
+    }
+  }
+
+  @Test
+  public void testMultipleOfGcd() {
+    final Random random = new Random(42);
+    final List<JsonNode> values = ImmutableList.of(jnf.numberNode(0), jnf.numberNode(1),
+        jnf.numberNode(-6), jnf.numberNode(12L), jnf.numberNode((short) 18), jnf.numberNode(24.0),
+        jnf.numberNode(-48.0f), jnf.numberNode(Long.MIN_VALUE), jnf.numberNode(Long.MAX_VALUE),
+        jnf.numberNode(1L << 62), jnf.numberNode(0x1p63), jnf.numberNode(-0x1p70),
+        jnf.numberNode(1e300), jnf.numberNode(BigInteger.ONE.shiftLeft(80)),
+        jnf.numberNode(BigInteger.valueOf(96)), jnf.numberNode(new BigDecimal("1.2E+3")),
+        jnf.numberNode(new BigDecimal("192.000")), jnf.textNode("foo"));
+    for (int i = 0; i < 2000; i++) {
+      final List<JsonNode> samples = new ArrayList<>();
+      final int size = random.nextInt(5);
+      final long multiplier = random.nextBoolean() ? 1 : 1L << random.nextInt(64);
+      for (int j = 0; j < size; j++) {
+        samples.add(random.nextBoolean() ? values.get(random.nextInt(values.size()))
+            : jnf.numberNode(multiplier * random.nextInt(1000)));
+      }
+      final BigInteger expectedGcd = samples.stream().filter(JsonNode::isNumber)
+          .map(JsonNode::bigIntegerValue).reduce(BigInteger.ZERO, BigInteger::gcd);
+      final JsonNode expected =
+          expectedGcd.signum() == 0 ? null : JunkDrawer.numberNode(expectedGcd);
+      final GenericSchemaFeatureInput input = new GenericSchemaFeatureInput(jnf.objectNode(),
+          samples, Consts.Types.INTEGER, SpecVersion.DRAFT_07);
+      assertEquals(expected, MultipleOfPolicies.gcd().getMultipleOf(input), samples.toString());
+      final SampleStats stats = new SampleStats();
+      final SampleStats mergedStats = new SampleStats();
+      for (int j = 0; j < samples.size(); j++) {
+        stats.addPrimitive(samples.get(j), j);
+        final SampleStats singleStats = new SampleStats();
+        singleStats.addPrimitive(samples.get(j), j);
+        mergedStats.merge(singleStats);
+      }
+      assertEquals(expected, stats.getNumbersGcd(), samples.toString());
+      assertEquals(expected, mergedStats.getNumbersGcd(), samples.toString());
+    }
+    // multipleOf has to be positive
+    assertEquals(jnf.numberNode(3), MultipleOfPolicies.gcd().getMultipleOf(
+        new GenericSchemaFeatureInput(jnf.objectNode(), ImmutableList.of(jnf.numberNode(-3)),
+            Consts.Types.INTEGER, SpecVersion.DRAFT_07)));
+  }
+
   @Test
   public void testEnum() {
     assertThrows(NullPointerException.class,
@@ -547,6 +1149,18 @@ public class JsonSchemaInferrerOptionsTest {
       assertTrue(stream(anyOf)
           .anyMatch(_anyOf -> _anyOf.path("enum").get(0).textValue().equals("TUESDAY")));
     }
+    {
+      // Duplicates and results not coming directly from the samples
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .addEnumExtractors(EnumExtractors.validEnum(TimeUnit.class),
+              input -> Collections.singleton(Collections.singleton(jnf.numberNode(1))))
+          .build();
+      final ObjectNode schema = inferrer.inferForSamples(Arrays.asList(jnf.textNode("DAYS"),
+          jnf.textNode("DAYS"), jnf.numberNode(1), jnf.numberNode(1), jnf.numberNode(1L)));
+      final JsonNode anyOf = schema.get("anyOf");
+      assertEquals(3, anyOf.size());
+      assertTrue(stream(anyOf).anyMatch(_anyOf -> _anyOf.path("type").asText().equals("integer")));
+    }
     {
       final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
           .addEnumExtractors(input -> Collections.singleton(Collections.emptySet())).build();
@@ -687,4 +1301,184 @@ public class JsonSchemaInferrerOptionsTest {
     assertEquals("bar", schema.path("foo").textValue());
   }
 
+  @Test
+  public void testInferenceBudget() {
+    assertThrows(IllegalArgumentException.class,
+        () -> InferenceBudget.unlimited().withMaxDuration(Duration.ZERO));
+    assertThrows(IllegalArgumentException.class,
+        () -> InferenceBudget.unlimited().withMaxNodes(0));
+    assertThrows(NullPointerException.class,
+        () -> InferenceBudget.unlimited().withCancellation(null));
+    JsonNode deepSample = jnf.textNode("foo");
+    for (int i = 0; i < 100; i++) {
+      deepSample = jnf.objectNode().set("a", jnf.arrayNode().add(deepSample));
+    }
+    final List<JsonNode> samples = ImmutableList.of(deepSample, deepSample);
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .setInferenceBudget(InferenceBudget.unlimited().withMaxNodes(100)).build();
+    assertThrows(InferenceAbortedException.class, () -> inferrer.inferForSamples(samples));
+    final ObjectNode schema = inferrer.inferForSamples(samples, InferenceBudget.unlimited());
+    assertEquals(JsonSchemaInferrer.newBuilder().build().inferForSamples(samples), schema);
+    assertEquals(schema, inferrer.inferForSamples(samples,
+        InferenceBudget.unlimited().withMaxNodes(402).withMaxDuration(Duration.ofDays(1))));
+    assertThrows(InferenceAbortedException.class, () -> inferrer.inferForSamples(samples,
+        InferenceBudget.unlimited().withMaxNodes(401)));
+    assertThrows(InferenceAbortedException.class, () -> inferrer.inferForSamples(samples,
+        InferenceBudget.unlimited().withMaxDuration(Duration.ofNanos(1))));
+    final AtomicInteger checks = new AtomicInteger();
+    final InferenceBudget cancelledLater =
+        InferenceBudget.unlimited().withCancellation(() -> checks.incrementAndGet() > 50);
+    assertThrows(InferenceAbortedException.class,
+        () -> inferrer.inferForSamples(samples, cancelledLater));
+    assertEquals(51, checks.get());
+    // Cancellation goes through the fork-join tasks
+    final JsonSchemaInferrer parallelInferrer = JsonSchemaInferrer.newBuilder()
+        .setParallelism(ForkJoinPool.commonPool(), 1)
+        .setInferenceBudget(InferenceBudget.unlimited().withCancellation(() -> true)).build();
+    assertThrows(InferenceAbortedException.class,
+        () -> parallelInferrer.inferForSamples(samples));
+    // Document sampling checks the budget before the samples are visited
+    final List<JsonNode> manySamples = Collections.nCopies(100000, jnf.objectNode().put("a", 1));
+    final AtomicInteger iteratedCount = new AtomicInteger();
+    final Collection<JsonNode> countingSamples = new AbstractCollection<JsonNode>() {
+
+      @Override
+      public Iterator<JsonNode> iterator() {
+        return Iterators.transform(manySamples.iterator(), sample -> {
+          iteratedCount.incrementAndGet();
+          return sample;
+        });
+      }
+
+      @Override
+      public int size() {
+        return manySamples.size();
+      }
+
+    };
+    final JsonSchemaInferrer samplingInferrer = JsonSchemaInferrer.newBuilder()
+        .setDocumentSampling(DocumentSampling.fixedSize(50000, 1)).build();
+    final InferenceBudget cancelled = InferenceBudget.unlimited().withCancellation(() -> true);
+    assertThrows(InferenceAbortedException.class,
+        () -> samplingInferrer.inferForSamples(countingSamples, cancelled));
+    assertTrue(iteratedCount.get() <= 1024);
+  }
+
+  @Test
+  public void testParallelism() {
+    assertThrows(IllegalArgumentException.class,
+        () -> JsonSchemaInferrer.newBuilder().setParallelism(ForkJoinPool.commonPool(), 0));
+    final List<Supplier<JsonSchemaInferrerBuilder>> builderSuppliers = ImmutableList.of(
+        JsonSchemaInferrer::newBuilder,
+        () -> JsonSchemaInferrer.newBuilder()
+            .setSpecVersion(SpecVersion.DRAFT_07)
+            .addEnumExtractors(EnumExtractors.validEnum(Month.class))
+            .setTitleDescriptionGenerator(TitleDescriptionGenerators.useFieldNamesAsTitles())
+            .setRequiredPolicy(RequiredPolicies.commonFields())
+            .setDefaultPolicy(DefaultPolicies.useFirstSamples())
+            .setExamplesPolicy(ExamplesPolicies.useFirstSamples(3))
+            .setMultipleOfPolicy(MultipleOfPolicies.gcd())
+            .setNumberRangeFeatures(EnumSet.allOf(NumberRangeFeature.class)));
+    final List<JsonNode> wideSamples = IntStream.range(0, 20)
+        .mapToObj(i -> {
+          final ObjectNode sample = jnf.objectNode();
+          for (int j = 0; j < 200; j++) {
+            if ((i + j) % 3 == 0) {
+              sample.put("f" + j, i * j);
+            } else if ((i + j) % 3 == 1) {
+              sample.putArray("f" + j).add(i).add("MARCH").addObject().put("a", j);
+            } else {
+              sample.put("f" + j, i % 2 == 0 ? "foo" : null);
+            }
+          }
+          return sample;
+        })
+        .collect(Collectors.toList());
+    final List<List<JsonNode>> sampleLists =
+        new ArrayList<>(SchemaAccumulatorTest.getTestSamples());
+    sampleLists.add(wideSamples);
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (Supplier<JsonSchemaInferrerBuilder> builderSupplier : builderSuppliers) {
+        final JsonSchemaInferrer sequentialInferrer = builderSupplier.get().build();
+        for (int threshold : new int[] {1, 2, 50}) {
+          final JsonSchemaInferrer parallelInferrer =
+              builderSupplier.get().setParallelism(pool, threshold).build();
+          for (List<JsonNode> samples : sampleLists) {
+            final ObjectNode expected = sequentialInferrer.inferForSamples(samples);
+            assertEquals(expected, parallelInferrer.inferForSamples(samples));
+            // Same output from within the pool
+            assertEquals(expected,
+                pool.submit(() -> parallelInferrer.inferForSamples(samples)).join());
+            assertEquals(expected.toString(), parallelInferrer.inferForSamples(samples).toString());
+          }
+        }
+      }
+      assertThrows(IllegalArgumentException.class,
+          () -> JsonSchemaInferrer.newBuilder().setParallelism(pool, 1).build()
+              .inferForSamples(Arrays.asList(jnf.objectNode().putPOJO("a", 1), jnf.arrayNode())));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testSubschemaDefinitions() {
+    assertThrows(IllegalArgumentException.class,
+        () -> JsonSchemaInferrer.newBuilder().setSubschemaDefinitions(1));
+    final ObjectNode sample = jnf.objectNode();
+    sample.putObject("home").put("street", "a").put("zip", 1);
+    sample.putObject("work").put("street", "b").put("zip", 2);
+    sample.putArray("people").addObject().put("name", "c").putObject("work address")
+        .put("street", "d").put("zip", 3);
+    sample.putObject("other").put("street", 1);
+    // The point is only repeated within the repeated shapes
+    sample.putArray("shapes").addObject().putObject("point").put("x", 1).put("y", 2);
+    sample.withArray("shapes").addObject().putObject("point").put("x", 3).put("y", 4);
+    sample.putObject("shape").putObject("point").put("x", 5).put("y", 6);
+    for (SpecVersion specVersion : SpecVersion.values()) {
+      final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+          .setSpecVersion(specVersion).setSubschemaDefinitions(2).build();
+      final ObjectNode schema = inferrer.inferForSample(sample);
+      assertEquals(ImmutableSet.of("home", "shapesItem"),
+          ImmutableSet.copyOf(schema.path("definitions").fieldNames()));
+      assertEquals("object", schema.path("definitions").path("home").path("type").textValue());
+      assertEquals("integer", schema.path("definitions").path("home").path("properties")
+          .path("zip").path("type").textValue());
+      final JsonNode homeRef = jnf.objectNode().put("$ref", "#/definitions/home");
+      assertEquals(homeRef, schema.path("properties").path("home"));
+      assertEquals(homeRef, schema.path("properties").path("work"));
+      assertEquals(homeRef, schema.path("properties").path("people").path("items")
+          .path("properties").path("work address"));
+      assertEquals("object", schema.path("properties").path("other").path("type").textValue());
+      final JsonNode shapeRef = jnf.objectNode().put("$ref", "#/definitions/shapesItem");
+      assertEquals(shapeRef, schema.path("properties").path("shapes").path("items"));
+      assertEquals(shapeRef, schema.path("properties").path("shape"));
+      assertEquals("integer", schema.path("definitions").path("shapesItem").path("properties")
+          .path("point").path("properties").path("x").path("type").textValue());
+      // Same schema as without definitions otherwise
+      final ObjectNode schemaWithoutDefinitions = JsonSchemaInferrer.newBuilder()
+          .setSpecVersion(specVersion).build().inferForSample(sample);
+      assertEquals(schemaWithoutDefinitions.path("properties").path("home"),
+          schema.path("definitions").path("home"));
+      assertEquals(schemaWithoutDefinitions.path("properties").path("other"),
+          schema.path("properties").path("other"));
+      assertEquals(inferrer.newSchemaAccumulator().add(sample).toSchema(), schema);
+    }
+    {
+      final ObjectNode schema = JsonSchemaInferrer.newBuilder().setSubschemaDefinitions(4)
+          .build().inferForSample(sample);
+      assertFalse(schema.has("definitions"));
+      assertEquals(JsonSchemaInferrer.newBuilder().build().inferForSample(sample), schema);
+    }
+    {
+      // The titles are part of the subschemas
+      final ObjectNode schema = JsonSchemaInferrer.newBuilder().setSubschemaDefinitions(2)
+          .setTitleDescriptionGenerator(TitleDescriptionGenerators.useFieldNamesAsTitles())
+          .build().inferForSample(sample);
+      assertEquals(ImmutableSet.of("point"),
+          ImmutableSet.copyOf(schema.path("definitions").fieldNames()));
+    }
+  }
+
 }
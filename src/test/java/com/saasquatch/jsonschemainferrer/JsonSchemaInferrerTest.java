@@ -5,14 +5,22 @@ import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.mapper;
 import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.toStringSet;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.POJONode;
 import com.google.common.collect.ImmutableSet;
@@ -106,4 +114,132 @@ public class JsonSchemaInferrerTest {
     }
   }
 
+  @Test
+  public void testInferTo() throws Exception {
+    for (JsonSchemaInferrer inferrer : SchemaAccumulatorTest.getTestInferrers()) {
+      for (List<JsonNode> samples : SchemaAccumulatorTest.getTestSamples()) {
+        final String expected = inferrer.inferForSamples(samples).toString();
+        final StringWriter writer = new StringWriter();
+        inferrer.inferTo(writer, samples);
+        assertEquals(expected, writer.toString());
+      }
+    }
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder().build();
+    final StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+      generator.writeStartArray();
+      inferrer.inferTo(generator, Collections.singleton(loadJson("simple.json")));
+      inferrer.inferTo(generator, Collections.singleton(loadJson("advanced.json")));
+      generator.writeEndArray();
+    }
+    assertEquals(
+        jnf.arrayNode().add(inferrer.inferForSample(loadJson("simple.json")))
+            .add(inferrer.inferForSample(loadJson("advanced.json"))),
+        mapper.readTree(writer.toString()));
+    assertThrows(IllegalArgumentException.class,
+        () -> inferrer.inferTo(new StringWriter(), Collections.emptyList()));
+  }
+
+  @Test
+  public void testDeepSamples() throws Exception {
+    final int depth = 5000;
+    final ObjectNode sample = jnf.objectNode();
+    ObjectNode current = sample;
+    for (int i = 0; i < depth; i++) {
+      current.put("b", i);
+      current = current.putArray("a").addObject();
+    }
+    current.put("b", "foo");
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .setRequiredPolicy(RequiredPolicies.commonFields()).build();
+    final List<ObjectNode> schemas = new ArrayList<>();
+    // Newer Jackson versions limit the nesting depth of generators to 1000
+    final int writtenDepth = 300;
+    JsonNode writtenSample = sample;
+    for (int i = writtenDepth; i < depth; i++) {
+      writtenSample = writtenSample.path("a").path(0);
+    }
+    final JsonNode finalWrittenSample = writtenSample;
+    final StringWriter writer = new StringWriter();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    // A stack that is way too small for recursing into the samples
+    final Thread thread = new Thread(null, () -> {
+      try {
+        schemas.add(inferrer.inferForSample(sample));
+        schemas.add(inferrer.newSchemaAccumulator().add(sample).toSchema());
+        final SchemaSummary summary =
+            inferrer.newSchemaAccumulator().addAll(sample.traverse()).toSummary();
+        schemas.add(inferrer.inferForSummary(SchemaSummary.merge(summary, summary)));
+        inferrer.inferTo(writer, Collections.singleton(finalWrittenSample));
+      } catch (Throwable e) {
+        error.set(e);
+      }
+    }, "testDeepSamples", 256 * 1024);
+    thread.start();
+    thread.join();
+    assertNull(error.get());
+    // Walk the schema without recursion, since comparing deep JsonNodes recurses as well
+    JsonNode schema = schemas.get(0);
+    for (int i = 0; i < depth; i++) {
+      assertEquals("object", schema.path("type").textValue());
+      assertEquals("integer", schema.path("properties").path("b").path("type").textValue());
+      assertEquals(2, schema.path("required").size());
+      schema = schema.path("properties").path("a");
+      assertEquals("array", schema.path("type").textValue());
+      schema = schema.path("items");
+    }
+    assertEquals("string", schema.path("properties").path("b").path("type").textValue());
+    final String written = writer.toString();
+    assertTrue(written.startsWith("{\"$schema\""));
+    assertEquals(writtenDepth, written.split("\"items\":", -1).length - 1);
+    final int hashCode = AnyOfSet.hashCode(schemas.get(0), new IdentityHashMap<>());
+    for (ObjectNode otherSchema : schemas) {
+      assertEquals(hashCode, AnyOfSet.hashCode(otherSchema, new IdentityHashMap<>()));
+    }
+    // Same hash code as JsonNode itself
+    final ObjectNode shallowSchema = inferrer.inferForSample(loadJson("advanced.json"));
+    assertEquals(shallowSchema.hashCode(),
+        AnyOfSet.hashCode(shallowSchema, new IdentityHashMap<>()));
+  }
+
+  @Test
+  public void testDeepNestedArrays() throws Exception {
+    // Arrays directly nested in arrays, without any objects in between
+    final int depth = 5000;
+    final ArrayNode sample = jnf.arrayNode();
+    ArrayNode current = sample;
+    for (int i = 0; i < depth; i++) {
+      current = current.addArray();
+    }
+    current.add("x");
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder().build();
+    final List<ObjectNode> schemas = new ArrayList<>();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    // A stack that is way too small for recursing into the samples
+    final Thread thread = new Thread(null, () -> {
+      try {
+        schemas.add(inferrer.inferForSample(sample));
+        schemas.add(inferrer.newSchemaAccumulator().add(sample).toSchema());
+        schemas.add(inferrer.newSchemaAccumulator().addAll(sample.traverse()).toSchema());
+        final SchemaSummary summary = inferrer.newSchemaAccumulator().add(sample).toSummary();
+        schemas.add(inferrer.inferForSummary(SchemaSummary.merge(summary, summary)));
+      } catch (Throwable e) {
+        error.set(e);
+      }
+    }, "testDeepNestedArrays", 256 * 1024);
+    thread.start();
+    thread.join();
+    assertNull(error.get());
+    JsonNode schema = schemas.get(0);
+    for (int i = 0; i <= depth; i++) {
+      assertEquals("array", schema.path("type").textValue());
+      schema = schema.path("items");
+    }
+    assertEquals("string", schema.path("type").textValue());
+    final int hashCode = AnyOfSet.hashCode(schemas.get(0), new IdentityHashMap<>());
+    for (ObjectNode otherSchema : schemas) {
+      assertEquals(hashCode, AnyOfSet.hashCode(otherSchema, new IdentityHashMap<>()));
+    }
+  }
+
 }
@@ -1,12 +1,18 @@
 package com.saasquatch.jsonschemainferrer;
 
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.compareNumberNodes;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.elementsView;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.entryOf;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.filteredView;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.getBase64Length;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.getCommonFieldNames;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.getSerializedTextLength;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.groupValuesByFieldName;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.isMathematicalInteger;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.isNull;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.isValidEnum;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.isValidEnumIgnoreCase;
+import static com.saasquatch.jsonschemainferrer.JunkDrawer.mappedView;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.numberNode;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.stringColToArrayDistinct;
 import static com.saasquatch.jsonschemainferrer.JunkDrawer.unrecognizedEnumError;
@@ -17,13 +23,19 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.BigIntegerNode;
 import com.fasterxml.jackson.databind.node.BinaryNode;
@@ -49,6 +61,51 @@ public class JunkDrawerTest {
     assertEquals(2, arrayNode.size());
   }
 
+  @Test
+  public void testIsMathematicalInteger() {
+    assertTrue(isMathematicalInteger(new BigDecimal("0.000")));
+    assertTrue(isMathematicalInteger(new BigDecimal("1E+5")));
+    assertTrue(isMathematicalInteger(new BigDecimal("-12.000")));
+    assertTrue(isMathematicalInteger(new BigDecimal(BigInteger.ONE.shiftLeft(100))));
+    assertFalse(isMathematicalInteger(new BigDecimal("1.0001")));
+    assertFalse(isMathematicalInteger(new BigDecimal("-0.5")));
+  }
+
+  @Test
+  public void testCompareNumberNodes() {
+    final List<JsonNode> numbers = new ArrayList<>(Arrays.asList(jnf.numberNode((short) 1),
+        jnf.numberNode(1), jnf.numberNode(1L), jnf.numberNode(1.0), jnf.numberNode(1.0f),
+        jnf.numberNode(0.1), jnf.numberNode(0.1f), jnf.numberNode(0.0), jnf.numberNode(-0.0),
+        jnf.numberNode(-1.5), jnf.numberNode(Long.MAX_VALUE), jnf.numberNode(Long.MIN_VALUE),
+        jnf.numberNode(0x1p52), jnf.numberNode(0x1p53 + 2), jnf.numberNode(0x1p63),
+        jnf.numberNode(-0x1p63), jnf.numberNode((1L << 53) + 1), jnf.numberNode(1e300),
+        jnf.numberNode(-Double.MAX_VALUE), jnf.numberNode(Double.MIN_VALUE),
+        jnf.numberNode(Float.MAX_VALUE), jnf.numberNode(new BigDecimal("0.1")),
+        jnf.numberNode(new BigDecimal("1.00")), jnf.numberNode(new BigDecimal("-1E+3")),
+        jnf.numberNode(BigInteger.ONE.shiftLeft(100)), jnf.numberNode(BigInteger.valueOf(-7))));
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < 1000; i++) {
+      numbers.add(jnf.numberNode(random.nextInt(-100, 100)));
+      numbers.add(jnf.numberNode(random.nextLong()));
+      numbers.add(jnf.numberNode(random.nextInt(-100, 100) / 4.0));
+      numbers.add(jnf.numberNode(Double.longBitsToDouble(random.nextLong())));
+      numbers.add(jnf.numberNode((float) random.nextGaussian()));
+    }
+    numbers.removeIf(JunkDrawer::isTextualFloat);
+    for (int i = 0; i < 100000; i++) {
+      final JsonNode a = numbers.get(random.nextInt(numbers.size()));
+      final JsonNode b = numbers.get(random.nextInt(numbers.size()));
+      assertEquals(Integer.signum(a.decimalValue().compareTo(b.decimalValue())),
+          Integer.signum(compareNumberNodes(a, b)), a + " " + b);
+    }
+    for (JsonNode a : numbers.subList(0, 26)) {
+      for (JsonNode b : numbers.subList(0, 26)) {
+        assertEquals(Integer.signum(a.decimalValue().compareTo(b.decimalValue())),
+            Integer.signum(compareNumberNodes(a, b)), a + " " + b);
+      }
+    }
+  }
+
   @Test
   public void testGetCommonFieldNames() {
     assertTrue(getCommonFieldNames(Collections.emptyList(), false).isEmpty());
@@ -68,6 +125,25 @@ public class JunkDrawerTest {
     }
   }
 
+  @Test
+  public void testGroupValuesByFieldName() {
+    assertTrue(groupValuesByFieldName(Collections.emptyList()).isEmpty());
+    final Map<String, List<JsonNode>> valuesByFieldName =
+        groupValuesByFieldName(Arrays.asList(jnf.objectNode().put("b", 1).put("a", "a"),
+            jnf.objectNode(), jnf.objectNode().putNull("a").put("c", true)));
+    assertEquals(Arrays.asList("b", "a", "c"), new ArrayList<>(valuesByFieldName.keySet()));
+    assertEquals(Arrays.asList(jnf.numberNode(1)), valuesByFieldName.get("b"));
+    assertEquals(Arrays.asList(jnf.textNode("a"), jnf.nullNode()), valuesByFieldName.get("a"));
+    assertEquals(Arrays.asList(jnf.booleanNode(true)), valuesByFieldName.get("c"));
+    final SampleStats objectStats = new SampleStats();
+    groupValuesByFieldName(Arrays.asList(jnf.objectNode().put("b", 1).put("a", "a"),
+        jnf.objectNode().putNull("a").put("b", 2)), objectStats, null);
+    assertEquals(2, objectStats.getCount());
+    assertEquals(Arrays.asList("b", "a"), new ArrayList<>(objectStats.getCommonFieldNames(false)));
+    assertEquals(Arrays.asList("b"), new ArrayList<>(objectStats.getCommonFieldNames(true)));
+    assertEquals(2, objectStats.getMinSize().getAsInt());
+  }
+
   @Test
   public void testUnrecognizedEnum() {
     assertThrows(IllegalStateException.class, () -> unrecognizedEnumError(TimeUnit.DAYS));
@@ -131,6 +207,34 @@ public class JunkDrawerTest {
     assertEquals(1, getSerializedTextLength(jnf.textNode("😂")));
   }
 
+  @Test
+  public void testViews() {
+    final List<JsonNode> arrays = Arrays.asList(jnf.arrayNode().add(1).add(jnf.objectNode()),
+        jnf.arrayNode(), jnf.arrayNode().add("a"), jnf.arrayNode());
+    final Collection<JsonNode> elements = elementsView(arrays);
+    assertEquals(3, elements.size());
+    assertEquals(Arrays.asList(jnf.numberNode(1), jnf.objectNode(), jnf.textNode("a")),
+        new ArrayList<>(elements));
+    assertEquals(new ArrayList<>(elements), new ArrayList<>(elements));
+    assertTrue(elementsView(Collections.emptyList()).isEmpty());
+    assertFalse(elementsView(Collections.singleton(jnf.arrayNode())).iterator().hasNext());
+    final Collection<String> mapped = mappedView(elements, JsonNode::asText);
+    assertEquals(3, mapped.size());
+    assertEquals(Arrays.asList("1", "", "a"), new ArrayList<>(mapped));
+    final Collection<ValueNode> values =
+        filteredView(elements, ValueNode.class, jnf.textNode("a")::equals, 1);
+    assertEquals(1, values.size());
+    assertEquals(Collections.singletonList(jnf.numberNode(1)), new ArrayList<>(values));
+    assertThrows(NoSuchElementException.class, () -> {
+      final Iterator<ValueNode> iterator = values.iterator();
+      iterator.next();
+      iterator.next();
+    });
+    assertTrue(filteredView(elements, ArrayNode.class, j -> false, 0).isEmpty());
+    assertThrows(UnsupportedOperationException.class,
+        () -> filteredView(arrays, ArrayNode.class, j -> false, 4).add(jnf.arrayNode()));
+  }
+
   @Test
   public void testIsNull() {
     assertTrue(isNull(null));
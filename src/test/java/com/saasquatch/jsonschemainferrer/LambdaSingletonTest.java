@@ -16,6 +16,7 @@ public class LambdaSingletonTest {
     doTest(AdditionalPropertiesPolicies::existingTypes);
     doTest(FormatInferrers::noOp);
     doTest(FormatInferrers::dateTime);
+    doTest(FormatInferrers::fastAll);
     doTest(RequiredPolicies::noOp);
     doTest(RequiredPolicies::commonFields);
     doTest(RequiredPolicies::nonNullCommonFields);
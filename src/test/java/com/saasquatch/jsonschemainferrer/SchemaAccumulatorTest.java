@@ -0,0 +1,224 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.jnf;
+import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.mapper;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+
+public class SchemaAccumulatorTest {
+
+  private static JsonNode loadJson(String fileName) {
+    try (InputStream in = SchemaAccumulatorTest.class.getResourceAsStream(fileName)) {
+      return mapper.readTree(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static List<JsonSchemaInferrer> getTestInferrers() {
+    return ImmutableList.of(JsonSchemaInferrer.newBuilder().build(),
+        JsonSchemaInferrer.newBuilder()
+            .setSpecVersion(SpecVersion.DRAFT_07)
+            .addFormatInferrers(FormatInferrers.dateTime())
+            .setValueInspectionLimit(2, 1)
+            .setRequiredPolicy(RequiredPolicies.commonFields())
+            .setAdditionalPropertiesPolicy(AdditionalPropertiesPolicies.existingTypes())
+            .setDefaultPolicy(DefaultPolicies.useFirstSamples())
+            .setExamplesPolicy(ExamplesPolicies.useFirstSamples(3))
+            .setMultipleOfPolicy(MultipleOfPolicies.gcd())
+            .setObjectSizeFeatures(EnumSet.allOf(ObjectSizeFeature.class))
+            .setArrayLengthFeatures(EnumSet.allOf(ArrayLengthFeature.class))
+            .setStringLengthFeatures(EnumSet.allOf(StringLengthFeature.class))
+            .setNumberRangeFeatures(EnumSet.allOf(NumberRangeFeature.class))
+            .build(),
+        JsonSchemaInferrer.newBuilder()
+            .setIntegerTypePreference(IntegerTypePreference.IF_ANY)
+            .setIntegerTypeCriterion(IntegerTypeCriteria.mathematicalInteger())
+            .setTitleDescriptionGenerator(TitleDescriptionGenerators.useFieldNamesAsTitles())
+            .setRequiredPolicy(RequiredPolicies.nonNullCommonFields())
+            .setDefaultPolicy(DefaultPolicies.useLastSamples())
+            .setMultipleOfPolicy(MultipleOfPolicies.gcd())
+            .setNumberRangeFeatures(EnumSet.allOf(NumberRangeFeature.class))
+            .setSubschemaDefinitions(2)
+            .build(),
+        JsonSchemaInferrer.newBuilder()
+            .setSpecVersion(SpecVersion.DRAFT_06)
+            .setIntegerTypePreference(IntegerTypePreference.NEVER)
+            .setDefaultPolicy(DefaultPolicies.useFirstSamples())
+            .setExamplesPolicy(ExamplesPolicies.useLastSamples(2))
+            .setNumberRangeFeatures(EnumSet.allOf(NumberRangeFeature.class))
+            .setStringLengthFeatures(EnumSet.allOf(StringLengthFeature.class))
+            .build());
+  }
+
+  static List<List<JsonNode>> getTestSamples() {
+    return ImmutableList.of(
+        ImmutableList.of(loadJson("simple.json")),
+        ImmutableList.of(loadJson("advanced.json")),
+        ImmutableList.of(loadJson("simple.json"), loadJson("advanced.json"), jnf.nullNode()),
+        Arrays.asList(jnf.numberNode(1), jnf.numberNode(1.0), jnf.numberNode(BigDecimal.ONE),
+            jnf.numberNode(BigInteger.TEN), jnf.numberNode(-2.5), jnf.numberNode(Double.NaN),
+            jnf.textNode("foo"), jnf.textNode(""), jnf.booleanNode(true), null,
+            jnf.missingNode(), jnf.binaryNode(new byte[3])),
+        ImmutableList.of(jnf.objectNode().put("a", 1).put("b", "b"),
+            jnf.objectNode().put("a", 2.5).putNull("b"),
+            jnf.objectNode().put("c", "2020-01-01"),
+            jnf.arrayNode().add(jnf.arrayNode()).add(jnf.arrayNode().add(6).add(9)),
+            jnf.arrayNode()));
+  }
+
+  @Test
+  public void testSameAsInferForSamples() {
+    for (JsonSchemaInferrer inferrer : getTestInferrers()) {
+      for (List<JsonNode> samples : getTestSamples()) {
+        final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+        samples.forEach(accumulator::add);
+        assertEquals(samples.size(), accumulator.getSampleCount());
+        assertEquals(inferrer.inferForSamples(samples), accumulator.toSchema());
+      }
+    }
+  }
+
+  @Test
+  public void testParser() throws IOException {
+    for (JsonSchemaInferrer inferrer : getTestInferrers()) {
+      for (List<JsonNode> samples : getTestSamples()) {
+        final List<JsonNode> nonNullSamples =
+            samples.stream().filter(JunkDrawer::nonNull).collect(Collectors.toList());
+        // Tree traversing parsers keep the exact number types and binary values
+        final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+        for (JsonNode sample : nonNullSamples) {
+          accumulator.addAll(mapper.treeAsTokens(sample));
+        }
+        assertEquals(inferrer.inferForSamples(nonNullSamples), accumulator.toSchema());
+        // Text streams
+        final StringBuilder sb = new StringBuilder();
+        final List<JsonNode> parsedSamples = new ArrayList<>();
+        for (JsonNode sample : nonNullSamples) {
+          final String json = mapper.writeValueAsString(sample);
+          sb.append(json).append('\n');
+          parsedSamples.add(mapper.readTree(json));
+        }
+        assertEquals(inferrer.inferForSamples(parsedSamples), inferrer.inferFromStream(
+            new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8))));
+      }
+    }
+  }
+
+  @Test
+  public void testParserEdgeCases() throws IOException {
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .setNumberRangeFeatures(EnumSet.allOf(NumberRangeFeature.class)).build();
+    assertThrows(IllegalArgumentException.class,
+        () -> inferrer.inferFromStream(new ByteArrayInputStream(new byte[0])));
+    assertThrows(IllegalArgumentException.class,
+        () -> inferrer.inferFromParser(mapper.treeAsTokens(jnf.pojoNode(""))));
+    {
+      final String json = "[1, 2.5, null] {\"a\": [true]} \"foo\"";
+      try (JsonParser parser = mapper.getFactory().createParser(json)) {
+        assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+        assertEquals(inferrer.inferForSamples(ImmutableList.of(mapper.readTree("[1, 2.5, null]"),
+            mapper.readTree("{\"a\": [true]}"), jnf.textNode("foo"))),
+            inferrer.inferFromParser(parser));
+      }
+    }
+    {
+      final ObjectMapper nanMapper =
+          JsonMapper.builder().enable(JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS).build();
+      try (JsonParser parser = nanMapper.getFactory().createParser("NaN 1.5 {\"a\": NaN}")) {
+        assertEquals(
+            inferrer.inferForSamples(ImmutableList.of(jnf.numberNode(Double.NaN),
+                jnf.numberNode(1.5), jnf.objectNode().put("a", Double.NaN))),
+            inferrer.inferFromParser(parser));
+      }
+    }
+  }
+
+  @Test
+  public void testIncremental() {
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .setNumberRangeFeatures(EnumSet.allOf(NumberRangeFeature.class)).build();
+    final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+    assertThrows(IllegalStateException.class, accumulator::toSchema);
+    accumulator.add(jnf.numberNode(1));
+    assertEquals(inferrer.inferForSample(jnf.numberNode(1)), accumulator.toSchema());
+    accumulator.add(jnf.numberNode(5));
+    assertEquals(5, accumulator.toSchema().path("maximum").intValue());
+  }
+
+  @Test
+  public void testRandomSamples() {
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .setSpecVersion(SpecVersion.DRAFT_07)
+        .setDefaultPolicy(DefaultPolicies.useRandomSamples(7))
+        .setExamplesPolicy(ExamplesPolicies.useRandomSamples(4, 42))
+        .build();
+    final List<JsonNode> samples = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      samples.add(jnf.objectNode().put("a", i).put("b", "b" + i % 10));
+    }
+    final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+    samples.forEach(accumulator::add);
+    // Same seed and same order
+    assertEquals(inferrer.inferForSamples(samples), accumulator.toSchema());
+    assertEquals(inferrer.inferForSamples(samples),
+        inferrer.inferForSummary(accumulator.toSummary()));
+    // Merged reservoirs are still bounded and only contain the samples
+    final SchemaSummary merged = SchemaSummary.merge(accumulator.toSummary(),
+        inferrer.newSchemaAccumulator().add(jnf.objectNode().put("a", -1)).toSummary());
+    final ObjectNode schema = inferrer.inferForSummary(merged);
+    final JsonNode examples = schema.path("properties").path("a").path("examples");
+    assertEquals(4, examples.size());
+    for (JsonNode example : examples) {
+      assertTrue(example.intValue() >= -1 && example.intValue() < 1000);
+    }
+    assertTrue(schema.path("properties").path("b").path("default").textValue().startsWith("b"));
+  }
+
+  @Test
+  public void testUnsupported() {
+    assertThrows(IllegalStateException.class,
+        () -> JsonSchemaInferrer.newBuilder().addEnumExtractors(EnumExtractors.validEnum(Month.class))
+            .build().newSchemaAccumulator());
+    assertThrows(IllegalArgumentException.class, () -> JsonSchemaInferrer.newBuilder().build()
+        .newSchemaAccumulator().add(jnf.arrayNode().add(jnf.pojoNode(""))));
+    {
+      final SchemaAccumulator accumulator = JsonSchemaInferrer.newBuilder()
+          .setSpecVersion(SpecVersion.DRAFT_06)
+          .setExamplesPolicy(input -> jnf.arrayNode().addAll(input.getSamples()))
+          .build().newSchemaAccumulator();
+      accumulator.add(jnf.textNode("foo"));
+      assertThrows(IllegalStateException.class, accumulator::toSchema);
+    }
+    {
+      final ObjectNode schema = JsonSchemaInferrer.newBuilder()
+          .addGenericSchemaFeatures(input -> jnf.objectNode().put("foo", input.getType()))
+          .build().newSchemaAccumulator().add(jnf.textNode("bar")).toSchema();
+      assertEquals("string", schema.path("foo").textValue());
+    }
+  }
+
+}
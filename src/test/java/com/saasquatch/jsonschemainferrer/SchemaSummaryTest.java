@@ -0,0 +1,152 @@
+package com.saasquatch.jsonschemainferrer;
+
+import static com.saasquatch.jsonschemainferrer.SchemaAccumulatorTest.getTestInferrers;
+import static com.saasquatch.jsonschemainferrer.SchemaAccumulatorTest.getTestSamples;
+import static com.saasquatch.jsonschemainferrer.TestJunkDrawer.jnf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class SchemaSummaryTest {
+
+  private static SchemaSummary summarize(JsonSchemaInferrer inferrer, List<JsonNode> samples) {
+    final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+    samples.forEach(accumulator::add);
+    return accumulator.toSummary();
+  }
+
+  @Test
+  public void testMerge() {
+    final List<JsonNode> allSamples = new ArrayList<>();
+    getTestSamples().forEach(allSamples::addAll);
+    for (JsonSchemaInferrer inferrer : getTestInferrers()) {
+      final ObjectNode expected = inferrer.inferForSamples(allSamples);
+      final List<SchemaSummary> shards = new ArrayList<>();
+      for (List<JsonNode> samples : getTestSamples()) {
+        shards.add(summarize(inferrer, samples));
+      }
+      // Left fold
+      SchemaSummary leftFolded = SchemaSummary.empty();
+      for (SchemaSummary shard : shards) {
+        leftFolded = SchemaSummary.merge(leftFolded, shard);
+      }
+      // Right fold
+      SchemaSummary rightFolded = SchemaSummary.empty();
+      for (int i = shards.size() - 1; i >= 0; i--) {
+        rightFolded = SchemaSummary.merge(shards.get(i), rightFolded);
+      }
+      assertEquals(allSamples.size(), leftFolded.getSampleCount());
+      assertEquals(allSamples.size(), rightFolded.getSampleCount());
+      assertEquals(expected, inferrer.inferForSummary(leftFolded));
+      assertEquals(expected, inferrer.inferForSummary(rightFolded));
+      // Merging does not modify the inputs
+      for (int i = 0; i < shards.size(); i++) {
+        assertEquals(inferrer.inferForSamples(getTestSamples().get(i)),
+            inferrer.inferForSummary(shards.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testCollector() {
+    final List<JsonNode> allSamples = new ArrayList<>();
+    getTestSamples().forEach(allSamples::addAll);
+    for (int i = 0; i < 4; i++) {
+      allSamples.addAll(allSamples);
+    }
+    for (JsonSchemaInferrer inferrer : getTestInferrers()) {
+      final ObjectNode expected = inferrer.inferForSamples(allSamples);
+      assertEquals(expected, allSamples.stream().collect(inferrer.toSchemaCollector()));
+      assertEquals(expected, allSamples.parallelStream().collect(inferrer.toSchemaCollector()));
+      for (List<JsonNode> samples : getTestSamples()) {
+        assertEquals(inferrer.inferForSamples(samples),
+            samples.parallelStream().collect(inferrer.toSchemaCollector()));
+      }
+    }
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder().build();
+    assertThrows(IllegalArgumentException.class,
+        () -> Stream.<JsonNode>empty().collect(inferrer.toSchemaCollector()));
+    assertThrows(IllegalStateException.class,
+        () -> JsonSchemaInferrer.newBuilder()
+            .addEnumExtractors(EnumExtractors.validEnum(Month.class))
+            .build().toSchemaCollector());
+    assertThrows(IllegalArgumentException.class,
+        () -> inferrer.newSchemaAccumulator().merge(JsonSchemaInferrer.newBuilder().build()
+            .newSchemaAccumulator()));
+  }
+
+  @Test
+  public void testCommutative() {
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder()
+        .setRequiredPolicy(RequiredPolicies.commonFields())
+        .setMultipleOfPolicy(MultipleOfPolicies.gcd())
+        .build();
+    final SchemaSummary a = summarize(inferrer, getTestSamples().get(0));
+    final SchemaSummary b = summarize(inferrer, getTestSamples().get(1));
+    assertEquals(inferrer.inferForSummary(SchemaSummary.merge(a, b)),
+        inferrer.inferForSummary(SchemaSummary.merge(b, a)));
+  }
+
+  @Test
+  public void testSnapshot() {
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder().build();
+    final SchemaAccumulator accumulator = inferrer.newSchemaAccumulator();
+    accumulator.add(jnf.textNode("foo"));
+    final SchemaSummary summary = accumulator.toSummary();
+    accumulator.add(jnf.numberNode(1));
+    assertEquals(1, summary.getSampleCount());
+    assertEquals(inferrer.inferForSample(jnf.textNode("foo")), inferrer.inferForSummary(summary));
+  }
+
+  @Test
+  public void testEmpty() {
+    final JsonSchemaInferrer inferrer = JsonSchemaInferrer.newBuilder().build();
+    assertEquals(0, SchemaSummary.empty().getSampleCount());
+    assertThrows(IllegalArgumentException.class,
+        () -> inferrer.inferForSummary(SchemaSummary.empty()));
+    assertThrows(IllegalArgumentException.class,
+        () -> inferrer.inferForSummary(inferrer.newSchemaAccumulator().toSummary()));
+    final SchemaSummary summary = summarize(inferrer, getTestSamples().get(2));
+    assertEquals(inferrer.inferForSummary(summary),
+        inferrer.inferForSummary(SchemaSummary.merge(SchemaSummary.empty(), summary)));
+    assertEquals(inferrer.inferForSummary(summary),
+        inferrer.inferForSummary(SchemaSummary.merge(summary, SchemaSummary.empty())));
+    assertSame(SchemaSummary.empty(), SchemaSummary.empty());
+  }
+
+  @Test
+  public void testSerializable() throws Exception {
+    for (JsonSchemaInferrer inferrer : getTestInferrers()) {
+      for (List<JsonNode> samples : getTestSamples()) {
+        final SchemaSummary summary = summarize(inferrer, samples);
+        assertEquals(inferrer.inferForSamples(samples),
+            inferrer.inferForSummary(roundTrip(summary)));
+      }
+    }
+  }
+
+  private static SchemaSummary roundTrip(SchemaSummary summary)
+      throws IOException, ClassNotFoundException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+      objectOut.writeObject(summary);
+    }
+    try (ObjectInputStream objectIn =
+        new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      return (SchemaSummary) objectIn.readObject();
+    }
+  }
+
+}